@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+/**
+ * Context for benchmarks on the JVM, where the Android framework is not available.
+ */
+final class BenchmarkContext extends ContextWrapper {
+
+    BenchmarkContext() {
+        super(null);
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+}
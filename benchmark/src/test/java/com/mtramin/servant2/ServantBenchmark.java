@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of serving a client from subscribing until the value is emitted. The
+ * {@link FakeBackend} connects clients and delivers results synchronously, so all measured time
+ * and allocations are spent in Servant and RxJava.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServantBenchmark {
+
+    @Param({"false", "true"})
+    public boolean pooling;
+
+    private final Api api = LocationServices.API;
+    private final FakeBackend backend = FakeBackend.create();
+    private Context context;
+    private Consumer<Object> onNext;
+    private Consumer<GoogleApiClient> onClientConnected;
+    private Consumer<Throwable> onError;
+    private Action onComplete;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        Servant.setClientFactory(backend);
+        Servant.setClientPoolingEnabled(pooling);
+
+        context = new BenchmarkContext();
+        onNext = blackhole::consume;
+        onClientConnected = blackhole::consume;
+        onError = blackhole::consume;
+        onComplete = () -> blackhole.consume(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Servant.setClientFactory(ClientFactory.DEFAULT);
+        Servant.setClientPoolingEnabled(false);
+    }
+
+    @Benchmark
+    public void actions() {
+        Servant.actions(context, api, onClientConnected, onError);
+    }
+
+    @Benchmark
+    public void observable() {
+        Servant.observable(context, api)
+                .subscribe(onNext, onError)
+                .dispose();
+    }
+
+    @Benchmark
+    public void single() {
+        Servant.single(new GoogleApiClientSingle<GoogleApiClient>(context, api) {
+            @Override
+            protected void onSingleClientConnected(GoogleApiClient googleApiClient) {
+                onSuccess(googleApiClient);
+            }
+        }).subscribe(onNext, onError);
+    }
+
+    @Benchmark
+    public void completable() {
+        Servant.completable(new GoogleApiClientCompletable(context, api) {
+            @Override
+            protected void onCompletableClientConnected(GoogleApiClient googleApiClient) {
+                onCompleted();
+            }
+        }).subscribe(onComplete, onError);
+    }
+
+    @Benchmark
+    public void requestSingle() {
+        Servant.single(new GoogleApiClientRequestSingle<Integer, Status>(context, api) {
+            @Override
+            protected Integer unwrap(Status result) {
+                return result.getStatusCode();
+            }
+
+            @Override
+            protected PendingResult<Status> createRequest(GoogleApiClient googleApiClient) {
+                return backend.request();
+            }
+        }).subscribe(onNext, onError);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2.test;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.Status;
+import com.mtramin.servant2.ClientFactory;
+import com.mtramin.servant2.GoogleApi;
+import com.mtramin.servant2.Servant;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scriptable fake of Google Play Services to run Servant without a device or network, e.g. in
+ * load and regression tests on the JVM.
+ * <p>
+ * Install it with {@link Servant#setClientFactory(ClientFactory)}:
+ * <pre>{@code
+ * FakeBackend backend = new FakeBackend.Builder()
+ *         .connectLatency(Latency.uniform(50, 500, TimeUnit.MILLISECONDS))
+ *         .connectionFailures(ConnectionResult.NETWORK_ERROR, 0.1)
+ *         .build();
+ * Servant.setClientFactory(backend);
+ * }</pre>
+ * All clients served by Servant will then be {@link FakeGoogleApiClient}s that connect, fail and
+ * get suspended according to the configuration of the backend. Requests are faked with
+ * {@link #request()} or {@link #request(ResultFactory)}.
+ * <p>
+ * Operations without latency complete immediately on the calling thread, all others complete on
+ * the {@link Scheduler} of the backend.
+ */
+public final class FakeBackend implements ClientFactory {
+
+    /**
+     * Creates the {@link Result} of a fake request.
+     *
+     * @param <R> type of the result
+     */
+    public interface ResultFactory<R extends Result> {
+
+        /**
+         * @param status status of the request, e.g. {@link CommonStatusCodes#SUCCESS}
+         * @return result of the request with the given status
+         */
+        R create(Status status);
+    }
+
+    private static final ResultFactory<Status> STATUS = status -> status;
+
+    private final Latency connectLatency;
+    private final Latency requestLatency;
+    private final Latency uptime;
+    private final int connectionErrorCode;
+    private final double connectionFailureRate;
+    private final int requestStatusCode;
+    private final double requestFailureRate;
+    private final int suspensionCause;
+    private final Scheduler scheduler;
+    private final Random random;
+    private final List<FakeGoogleApiClient> clients = new CopyOnWriteArrayList<>();
+
+    private FakeBackend(Builder builder) {
+        connectLatency = builder.connectLatency;
+        requestLatency = builder.requestLatency;
+        uptime = builder.uptime;
+        connectionErrorCode = builder.connectionErrorCode;
+        connectionFailureRate = builder.connectionFailureRate;
+        requestStatusCode = builder.requestStatusCode;
+        requestFailureRate = builder.requestFailureRate;
+        suspensionCause = builder.suspensionCause;
+        scheduler = builder.scheduler;
+        random = builder.random;
+    }
+
+    /**
+     * @return backend connecting all clients and completing all requests immediately
+     */
+    public static FakeBackend create() {
+        return new Builder().build();
+    }
+
+    /**
+     * Fake clients ignore the handler and deliver their callbacks on the calling thread or the
+     * scheduler of the backend, as there is no Looper on the JVM.
+     */
+    @Override
+    public GoogleApiClient create(Context context,
+                                  GoogleApi googleApi,
+                                  Handler handler,
+                                  GoogleApiClient.ConnectionCallbacks connectionCallbacks,
+                                  GoogleApiClient.OnConnectionFailedListener connectionFailedListener) {
+        return new FakeGoogleApiClient(this, googleApi, connectionCallbacks, connectionFailedListener);
+    }
+
+    /**
+     * @return all clients that are currently connected or connecting
+     */
+    public List<FakeGoogleApiClient> clients() {
+        return Collections.unmodifiableList(clients);
+    }
+
+    /**
+     * Suspends all connected clients. The clients reconnect automatically.
+     *
+     * @param cause cause of the suspension, e.g.
+     *              {@link GoogleApiClient.ConnectionCallbacks#CAUSE_NETWORK_LOST}
+     */
+    public void suspendAll(int cause) {
+        for (FakeGoogleApiClient client : clients) {
+            client.suspend(cause);
+        }
+    }
+
+    /**
+     * @return fake request completing with a {@link Status} after the request latency
+     */
+    public PendingResult<Status> request() {
+        return request(STATUS);
+    }
+
+    /**
+     * @param resultFactory factory creating the result from the status of the request
+     * @param <R>           type of the result
+     * @return fake request completing with a result after the request latency
+     */
+    public <R extends Result> PendingResult<R> request(ResultFactory<R> resultFactory) {
+        int statusCode = fails(requestFailureRate) ? requestStatusCode : CommonStatusCodes.SUCCESS;
+        return new FakePendingResult<>(this, resultFactory, statusCode, requestLatency.nextNanos(random));
+    }
+
+    long nextConnectLatency() {
+        return connectLatency.nextNanos(random);
+    }
+
+    int nextConnectionResult() {
+        return fails(connectionFailureRate) ? connectionErrorCode : ConnectionResult.SUCCESS;
+    }
+
+    /**
+     * @return delay until a connected client is suspended or {@code -1} if it stays connected
+     */
+    long nextUptime() {
+        return uptime == null ? -1 : uptime.nextNanos(random);
+    }
+
+    int suspensionCause() {
+        return suspensionCause;
+    }
+
+    /**
+     * Runs the action after the delay.
+     *
+     * @return the scheduled action or {@code null} if it already ran on the calling thread
+     */
+    Disposable schedule(Runnable action, long delayNanos) {
+        if (delayNanos <= 0) {
+            action.run();
+            return null;
+        }
+        return scheduler.scheduleDirect(action, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void attach(FakeGoogleApiClient client) {
+        if (!clients.contains(client)) {
+            clients.add(client);
+        }
+    }
+
+    void detach(FakeGoogleApiClient client) {
+        clients.remove(client);
+    }
+
+    private boolean fails(double rate) {
+        return rate > 0 && random.nextDouble() < rate;
+    }
+
+    /**
+     * Builder for {@link FakeBackend}s
+     */
+    public static final class Builder {
+
+        private Latency connectLatency = Latency.none();
+        private Latency requestLatency = Latency.none();
+        private Latency uptime;
+        private int connectionErrorCode = ConnectionResult.NETWORK_ERROR;
+        private double connectionFailureRate;
+        private int requestStatusCode = CommonStatusCodes.NETWORK_ERROR;
+        private double requestFailureRate;
+        private int suspensionCause = GoogleApiClient.ConnectionCallbacks.CAUSE_NETWORK_LOST;
+        private Scheduler scheduler = Schedulers.computation();
+        private Random random = new Random();
+
+        /**
+         * @param latency latency of connection attempts. Defaults to {@link Latency#none()}
+         */
+        public Builder connectLatency(Latency latency) {
+            this.connectLatency = checkNotNull(latency, "latency == null");
+            return this;
+        }
+
+        /**
+         * @param latency latency of requests. Defaults to {@link Latency#none()}
+         */
+        public Builder requestLatency(Latency latency) {
+            this.requestLatency = checkNotNull(latency, "latency == null");
+            return this;
+        }
+
+        /**
+         * Fails the given share of connection attempts.
+         *
+         * @param errorCode error code of the failed connections, see {@link ConnectionResult}
+         * @param rate      share of failing connection attempts between 0 and 1
+         */
+        public Builder connectionFailures(int errorCode, double rate) {
+            this.connectionErrorCode = errorCode;
+            this.connectionFailureRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * Fails the given share of requests.
+         *
+         * @param statusCode status code of the failed requests, see {@link CommonStatusCodes}
+         * @param rate       share of failing requests between 0 and 1
+         */
+        public Builder requestFailures(int statusCode, double rate) {
+            this.requestStatusCode = statusCode;
+            this.requestFailureRate = checkRate(rate);
+            return this;
+        }
+
+        /**
+         * Suspends connected clients after they were connected for the given time.
+         *
+         * @param uptime time until a connected client is suspended
+         * @param cause  cause of the suspensions
+         */
+        public Builder suspensions(Latency uptime, int cause) {
+            this.uptime = checkNotNull(uptime, "uptime == null");
+            this.suspensionCause = cause;
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler completing delayed operations. Defaults to
+         *                  {@link Schedulers#computation()}
+         */
+        public Builder scheduler(Scheduler scheduler) {
+            this.scheduler = checkNotNull(scheduler, "scheduler == null");
+            return this;
+        }
+
+        /**
+         * @param seed seed for latencies and failures to make test runs reproducible
+         */
+        public Builder seed(long seed) {
+            this.random = new Random(seed);
+            return this;
+        }
+
+        public FakeBackend build() {
+            return new FakeBackend(this);
+        }
+
+        private static <T> T checkNotNull(T value, String message) {
+            if (value == null) {
+                throw new NullPointerException(message);
+            }
+            return value;
+        }
+
+        private static double checkRate(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("rate between 0 and 1 required but it was " + rate);
+            }
+            return rate;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2.test;
+
+import android.support.annotation.NonNull;
+import android.support.v4.app.FragmentActivity;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.mtramin.servant2.GoogleApi;
+
+import io.reactivex.disposables.Disposable;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fake {@link GoogleApiClient} served by a {@link FakeBackend}. Connects, fails and gets suspended
+ * according to the configuration of the backend and can be suspended or failed manually.
+ * <p>
+ * Like the real client, a suspended client reconnects automatically.
+ */
+public final class FakeGoogleApiClient extends GoogleApiClient {
+
+    private final FakeBackend backend;
+    private final GoogleApi googleApi;
+    private final List<ConnectionCallbacks> connectionCallbacks = new CopyOnWriteArrayList<>();
+    private final List<OnConnectionFailedListener> connectionFailedListeners = new CopyOnWriteArrayList<>();
+
+    private boolean connecting;
+    private boolean connected;
+    /**
+     * Incremented on every change of the connection to invalidate scheduled completions
+     */
+    private int attempt;
+    private Disposable pending;
+
+    FakeGoogleApiClient(FakeBackend backend,
+                        GoogleApi googleApi,
+                        ConnectionCallbacks connectionCallbacks,
+                        OnConnectionFailedListener connectionFailedListener) {
+        this.backend = backend;
+        this.googleApi = googleApi;
+        this.connectionCallbacks.add(connectionCallbacks);
+        this.connectionFailedListeners.add(connectionFailedListener);
+    }
+
+    /**
+     * @return apis this client was created for
+     */
+    public GoogleApi googleApi() {
+        return googleApi;
+    }
+
+    /**
+     * Suspends the client if it is connected. The client reconnects automatically.
+     *
+     * @param cause cause of the suspension, e.g. {@link ConnectionCallbacks#CAUSE_NETWORK_LOST}
+     */
+    public void suspend(int cause) {
+        int attempt;
+        synchronized (this) {
+            if (!connected) {
+                return;
+            }
+            connected = false;
+            connecting = true;
+            attempt = nextAttempt();
+        }
+
+        for (ConnectionCallbacks callbacks : connectionCallbacks) {
+            callbacks.onConnectionSuspended(cause);
+        }
+        scheduleConnection(attempt);
+    }
+
+    /**
+     * Fails the client if it is connected or connecting.
+     *
+     * @param errorCode error code of the failure, see {@link ConnectionResult}
+     */
+    public void fail(int errorCode) {
+        synchronized (this) {
+            if (!connected && !connecting) {
+                return;
+            }
+            connected = false;
+            connecting = false;
+            nextAttempt();
+        }
+        dispatchFailure(errorCode);
+    }
+
+    @Override
+    public void connect() {
+        int attempt;
+        synchronized (this) {
+            if (connected || connecting) {
+                return;
+            }
+            connecting = true;
+            attempt = nextAttempt();
+            // Attached while connecting, so that a concurrent disconnect detaches it
+            backend.attach(this);
+        }
+        scheduleConnection(attempt);
+    }
+
+    @Override
+    public ConnectionResult blockingConnect() {
+        return blockingConnect(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public ConnectionResult blockingConnect(long timeout, @NonNull TimeUnit unit) {
+        int attempt;
+        synchronized (this) {
+            if (connected) {
+                return new ConnectionResult(ConnectionResult.SUCCESS);
+            }
+            connecting = true;
+            attempt = nextAttempt();
+            backend.attach(this);
+        }
+
+        long latency = backend.nextConnectLatency();
+        long timeoutNanos = unit.toNanos(timeout);
+        int result = latency > timeoutNanos ? ConnectionResult.TIMEOUT : backend.nextConnectionResult();
+        try {
+            TimeUnit.NANOSECONDS.sleep(Math.min(latency, timeoutNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = ConnectionResult.INTERRUPTED;
+        }
+        completeConnection(attempt, result);
+        return new ConnectionResult(result);
+    }
+
+    @Override
+    public void disconnect() {
+        synchronized (this) {
+            connected = false;
+            connecting = false;
+            nextAttempt();
+            backend.detach(this);
+        }
+    }
+
+    @Override
+    public void reconnect() {
+        disconnect();
+        connect();
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public synchronized boolean isConnecting() {
+        return connecting;
+    }
+
+    @Override
+    public boolean hasConnectedApi(@NonNull Api<?> api) {
+        return isConnected();
+    }
+
+    @NonNull
+    @Override
+    public ConnectionResult getConnectionResult(@NonNull Api<?> api) {
+        return new ConnectionResult(isConnected() ? ConnectionResult.SUCCESS : ConnectionResult.CANCELED);
+    }
+
+    @Override
+    public PendingResult<Status> clearDefaultAccountAndReconnect() {
+        reconnect();
+        return backend.request();
+    }
+
+    @Override
+    public void stopAutoManage(@NonNull FragmentActivity fragmentActivity) {
+        // Fake clients are never auto-managed
+    }
+
+    @Override
+    public void registerConnectionCallbacks(@NonNull ConnectionCallbacks connectionCallbacks) {
+        this.connectionCallbacks.add(connectionCallbacks);
+    }
+
+    @Override
+    public boolean isConnectionCallbacksRegistered(@NonNull ConnectionCallbacks connectionCallbacks) {
+        return this.connectionCallbacks.contains(connectionCallbacks);
+    }
+
+    @Override
+    public void unregisterConnectionCallbacks(@NonNull ConnectionCallbacks connectionCallbacks) {
+        this.connectionCallbacks.remove(connectionCallbacks);
+    }
+
+    @Override
+    public void registerConnectionFailedListener(@NonNull OnConnectionFailedListener listener) {
+        connectionFailedListeners.add(listener);
+    }
+
+    @Override
+    public boolean isConnectionFailedListenerRegistered(@NonNull OnConnectionFailedListener listener) {
+        return connectionFailedListeners.contains(listener);
+    }
+
+    @Override
+    public void unregisterConnectionFailedListener(@NonNull OnConnectionFailedListener listener) {
+        connectionFailedListeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.append(prefix)
+                .append("FakeGoogleApiClient api=").append(googleApi.api().getName())
+                .append(" connected=").append(String.valueOf(connected))
+                .append(" connecting=").println(connecting);
+    }
+
+    /**
+     * Invalidates all scheduled completions. Must be called while holding the lock.
+     *
+     * @return the new attempt
+     */
+    private int nextAttempt() {
+        if (pending != null) {
+            pending.dispose();
+            pending = null;
+        }
+        return ++attempt;
+    }
+
+    private void scheduleConnection(int attempt) {
+        int result = backend.nextConnectionResult();
+        Disposable scheduled = backend.schedule(() -> completeConnection(attempt, result),
+                backend.nextConnectLatency());
+        setPending(attempt, scheduled);
+    }
+
+    private void scheduleSuspension(int attempt) {
+        long uptime = backend.nextUptime();
+        if (uptime < 0) {
+            return;
+        }
+        // Always suspend asynchronously to not reconnect and suspend recursively
+        Disposable scheduled = backend.schedule(() -> {
+            synchronized (this) {
+                if (attempt != this.attempt) {
+                    return;
+                }
+            }
+            suspend(backend.suspensionCause());
+        }, Math.max(uptime, 1));
+        setPending(attempt, scheduled);
+    }
+
+    private synchronized void setPending(int attempt, Disposable scheduled) {
+        if (scheduled != null && attempt == this.attempt) {
+            pending = scheduled;
+        }
+    }
+
+    private void completeConnection(int attempt, int result) {
+        synchronized (this) {
+            if (attempt != this.attempt || !connecting) {
+                return;
+            }
+            pending = null;
+            connecting = false;
+            connected = result == ConnectionResult.SUCCESS;
+        }
+
+        if (result == ConnectionResult.SUCCESS) {
+            for (ConnectionCallbacks callbacks : connectionCallbacks) {
+                callbacks.onConnected(null);
+            }
+            scheduleSuspension(attempt);
+        } else {
+            dispatchFailure(result);
+        }
+    }
+
+    private void dispatchFailure(int errorCode) {
+        backend.detach(this);
+        ConnectionResult connectionResult = new ConnectionResult(errorCode);
+        for (OnConnectionFailedListener listener : connectionFailedListeners) {
+            listener.onConnectionFailed(connectionResult);
+        }
+    }
+}
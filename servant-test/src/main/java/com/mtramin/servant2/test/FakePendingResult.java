@@ -0,0 +1,184 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2.test;
+
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import io.reactivex.disposables.Disposable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fake request of a {@link FakeBackend} that completes with the given status after a latency.
+ * <p>
+ * Like a real {@link PendingResult}, timeouts complete the request with
+ * {@link CommonStatusCodes#TIMEOUT} and canceled requests never deliver a result to their callback.
+ */
+final class FakePendingResult<R extends Result> extends PendingResult<R> {
+
+    private final FakeBackend backend;
+    private final FakeBackend.ResultFactory<R> resultFactory;
+
+    private R result;
+    private boolean canceled;
+    private ResultCallback<? super R> callback;
+    private Disposable completion;
+    private Disposable timeout;
+
+    FakePendingResult(FakeBackend backend,
+                      FakeBackend.ResultFactory<R> resultFactory,
+                      int statusCode,
+                      long latencyNanos) {
+        this.backend = backend;
+        this.resultFactory = resultFactory;
+
+        Disposable completion = backend.schedule(() -> complete(statusCode), latencyNanos);
+        synchronized (this) {
+            if (result == null) {
+                this.completion = completion;
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public R await() {
+        synchronized (this) {
+            try {
+                while (result == null) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        complete(CommonStatusCodes.INTERRUPTED);
+        return result();
+    }
+
+    @NonNull
+    @Override
+    public R await(long time, @NonNull TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        synchronized (this) {
+            try {
+                long remaining;
+                while (result == null && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                complete(CommonStatusCodes.INTERRUPTED);
+            }
+        }
+        complete(CommonStatusCodes.TIMEOUT);
+        return result();
+    }
+
+    @Override
+    public void cancel() {
+        synchronized (this) {
+            if (result != null) {
+                return;
+            }
+            canceled = true;
+            callback = null;
+        }
+        complete(CommonStatusCodes.CANCELED);
+    }
+
+    @Override
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    @Override
+    public void setResultCallback(@NonNull ResultCallback<? super R> callback) {
+        R result;
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            result = this.result;
+            if (result == null) {
+                this.callback = callback;
+                return;
+            }
+        }
+        callback.onResult(result);
+    }
+
+    @Override
+    public void setResultCallback(@NonNull ResultCallback<? super R> callback,
+                                  long time,
+                                  @NonNull TimeUnit unit) {
+        if (result() == null) {
+            Disposable timeout = backend.schedule(() -> complete(CommonStatusCodes.TIMEOUT),
+                    Math.max(unit.toNanos(time), 1));
+            synchronized (this) {
+                if (result == null) {
+                    this.timeout = timeout;
+                } else {
+                    timeout.dispose();
+                }
+            }
+        }
+        setResultCallback(callback);
+    }
+
+    private synchronized R result() {
+        return result;
+    }
+
+    /**
+     * Completes the request with the given status unless it already completed.
+     */
+    private void complete(int statusCode) {
+        if (result() != null) {
+            return;
+        }
+
+        R result = resultFactory.create(new Status(statusCode));
+        ResultCallback<? super R> callback;
+        synchronized (this) {
+            if (this.result != null) {
+                return;
+            }
+            this.result = result;
+            callback = this.callback;
+            this.callback = null;
+            dispose(completion);
+            dispose(timeout);
+            notifyAll();
+        }
+
+        if (callback != null) {
+            callback.onResult(result);
+        }
+    }
+
+    private static void dispose(Disposable disposable) {
+        if (disposable != null) {
+            disposable.dispose();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2.test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the latencies of connections and requests of a {@link FakeBackend}.
+ */
+public abstract class Latency {
+
+    private static final Latency NONE = fixed(0, TimeUnit.NANOSECONDS);
+
+    /**
+     * @return latency completing immediately on the calling thread
+     */
+    public static Latency none() {
+        return NONE;
+    }
+
+    /**
+     * @param latency latency of every operation
+     * @param unit    unit of the latency
+     * @return constant latency
+     */
+    public static Latency fixed(long latency, TimeUnit unit) {
+        checkNotNegative(latency);
+        long nanos = unit.toNanos(latency);
+        return new Latency() {
+            @Override
+            public long nextNanos(Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * @param min  minimum latency
+     * @param max  maximum latency
+     * @param unit unit of the latencies
+     * @return latency uniformly distributed between min and max
+     */
+    public static Latency uniform(long min, long max, TimeUnit unit) {
+        checkNotNegative(min);
+        if (max < min) {
+            throw new IllegalArgumentException("max >= min required but it was " + max);
+        }
+        long minNanos = unit.toNanos(min);
+        long rangeNanos = unit.toNanos(max) - minNanos;
+        return new Latency() {
+            @Override
+            public long nextNanos(Random random) {
+                return minNanos + (long) (random.nextDouble() * rangeNanos);
+            }
+        };
+    }
+
+    /**
+     * @param mean mean latency
+     * @param unit unit of the latency
+     * @return exponentially distributed latency, e.g. to simulate a long tail of slow operations
+     */
+    public static Latency exponential(long mean, TimeUnit unit) {
+        checkNotNegative(mean);
+        long meanNanos = unit.toNanos(mean);
+        return new Latency() {
+            @Override
+            public long nextNanos(Random random) {
+                return (long) (-meanNanos * Math.log(1 - random.nextDouble()));
+            }
+        };
+    }
+
+    /**
+     * @param random source of randomness
+     * @return latency of the next operation in nanoseconds
+     */
+    public abstract long nextNanos(Random random);
+
+    private static void checkNotNegative(long latency) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("latency >= 0 required but it was " + latency);
+        }
+    }
+}
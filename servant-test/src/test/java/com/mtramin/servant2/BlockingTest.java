@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockingTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test
+    public void connectsOnTheSubscribingThread() {
+        Servant.single(new TestRequest(context, servant.backend(), "key").blocking()).test()
+                .assertResult("key#1");
+        Servant.single(new ConnectedSingle().blocking()).test()
+                .assertResult("connected");
+        Servant.completable(new ConnectedCompletable().blocking()).test()
+                .assertResult();
+    }
+
+    @Test
+    public void failsRequestSinglesThatDoNotConnectInTime() {
+        useSlowConnections();
+
+        long startedAt = System.nanoTime();
+        Servant.single(new TestRequest(context, servant.backend(), "key").blocking()).test()
+                .assertFailure(ClientTimeoutException.class);
+
+        assertWithinTimeout(startedAt);
+    }
+
+    @Test
+    public void failsSinglesThatDoNotConnectInTime() {
+        useSlowConnections();
+
+        long startedAt = System.nanoTime();
+        Servant.single(new ConnectedSingle().blocking()).test()
+                .assertFailure(ClientTimeoutException.class);
+
+        assertWithinTimeout(startedAt);
+    }
+
+    @Test
+    public void failsCompletablesThatDoNotConnectInTime() {
+        useSlowConnections();
+
+        long startedAt = System.nanoTime();
+        Servant.completable(new ConnectedCompletable().blocking()).test()
+                .assertFailure(ClientTimeoutException.class);
+
+        assertWithinTimeout(startedAt);
+    }
+
+    @Test
+    public void failsRequestsWithoutResultInTime() {
+        servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        Servant.setRequestTimeout(20, TimeUnit.MILLISECONDS);
+
+        long startedAt = System.nanoTime();
+        Servant.single(new TestRequest(context, servant.backend(), "key").blocking()).test()
+                .assertFailure(ClientTimeoutException.class);
+
+        assertWithinTimeout(startedAt);
+    }
+
+    @Test
+    public void overridesDefaultTimeoutsPerRequest() {
+        useSlowConnections();
+
+        long startedAt = System.nanoTime();
+        Servant.single(new TestRequest(context, servant.backend(), "key")
+                .timeout(10, 0, TimeUnit.MILLISECONDS)
+                .blocking())
+                .test()
+                .assertFailure(ClientTimeoutException.class);
+
+        assertWithinTimeout(startedAt);
+    }
+
+    @Test
+    public void refusesToConnectOnTheMainThread() {
+        BaseClient.testMainThread = Thread.currentThread();
+
+        Servant.single(new TestRequest(context, servant.backend(), "key").blocking()).test()
+                .assertFailure(IllegalStateException.class);
+        Servant.single(new ConnectedSingle().blocking()).test()
+                .assertFailure(IllegalStateException.class);
+        Servant.completable(new ConnectedCompletable().blocking()).test()
+                .assertFailure(IllegalStateException.class);
+
+        assertEquals(0, clientsCreated());
+    }
+
+    @Test
+    public void connectsOnTheGivenSchedulerWhenSubscribedOnTheMainThread() {
+        BaseClient.testMainThread = Thread.currentThread();
+
+        TestObserver<String> observer = Servant.single(new TestRequest(context, servant.backend(), "key")
+                .blocking(Schedulers.io()))
+                .test();
+
+        observer.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        observer.assertResult("key#1");
+    }
+
+    private void useSlowConnections() {
+        servant.use(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        Servant.setConnectTimeout(20, TimeUnit.MILLISECONDS);
+    }
+
+    private static void assertWithinTimeout(long startedAt) {
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static long clientsCreated() {
+        ServantMetricsRecorder.ApiSnapshot snapshot =
+                ((ServantMetricsRecorder) Servant.getMetrics()).snapshot().get(LocationServices.API);
+        return snapshot == null ? 0 : snapshot.clientsCreated();
+    }
+
+    private class ConnectedSingle extends GoogleApiClientSingle<String> {
+
+        ConnectedSingle() {
+            super(context, LocationServices.API);
+        }
+
+        @Override
+        protected void onSingleClientConnected(GoogleApiClient googleApiClient) {
+            onSuccess("connected");
+        }
+    }
+
+    private class ConnectedCompletable extends GoogleApiClientCompletable {
+
+        ConnectedCompletable() {
+            super(context, LocationServices.API);
+        }
+
+        @Override
+        protected void onCompletableClientConnected(GoogleApiClient googleApiClient) {
+            onCompleted();
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+import android.os.Handler;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Handlers do not run any messages in JVM tests, so actions posted to them are run on a thread
+ * named after the handler instead. Fake clients deliver their callbacks and results on their own
+ * threads, so only the handler the clients are built with is checked for those.
+ */
+public class CallbackHandlerTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+    private final Handler handler = new Handler();
+    private final Handler other = new Handler();
+    private final ThreadPoster poster = new ThreadPoster();
+    private RecordingFactory factory;
+
+    @Before
+    public void setUp() {
+        ClientConnection.handlerPoster = poster;
+        useBackend(FakeBackend.create());
+    }
+
+    @After
+    public void tearDown() {
+        poster.shutdown();
+    }
+
+    @Test
+    public void buildsClientsWithTheHandlerOfTheRequest() {
+        Servant.setCallbackHandler(other);
+
+        Servant.single(request("key").callbackHandler(handler)).test().assertResult("key#1");
+
+        assertSame(handler, factory.handlers.get(0));
+    }
+
+    @Test
+    public void buildsClientsWithTheDefaultHandler() {
+        Servant.setCallbackHandler(handler);
+
+        Servant.single(request("key")).test().assertResult("key#1");
+        Servant.observable(context, LocationServices.API).test().dispose();
+
+        assertSame(handler, factory.handlers.get(0));
+        assertSame(handler, factory.handlers.get(1));
+    }
+
+    @Test
+    public void postsConnectTimeoutToTheHandler() throws InterruptedException {
+        useBackend(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+
+        TestObserver<String> observer = Servant.single(request("key")
+                .callbackHandler(handler)
+                .timeout(20, 0, TimeUnit.MILLISECONDS))
+                .test();
+
+        assertTrue(observer.await(1, TimeUnit.SECONDS));
+        observer.assertFailure(ClientTimeoutException.class);
+        assertEquals(poster.threadName(handler), observer.lastThread().getName());
+        assertEquals(1, poster.posts(handler));
+    }
+
+    @Test
+    public void removesConnectTimeoutFromTheHandlerOnceConnected() {
+        Servant.single(request("key")
+                .callbackHandler(handler)
+                .timeout(1, 0, TimeUnit.MINUTES))
+                .test()
+                .assertResult("key#1");
+
+        assertEquals(1, poster.posts(handler));
+        assertEquals(1, poster.removals(handler));
+    }
+
+    @Test
+    public void buildsRateLimitedClientsOnTheHandler() throws InterruptedException {
+        Servant.setRateLimiter(LocationServices.API, new RateLimiter.Builder()
+                .rate(1, 50, TimeUnit.MILLISECONDS)
+                .burst(1)
+                .waitForPermits(true)
+                .build());
+        Servant.single(request("first")).test().assertResult("first#1");
+
+        TestObserver<String> observer = Servant.single(request("second").callbackHandler(handler)).test();
+
+        assertTrue(observer.await(1, TimeUnit.SECONDS));
+        observer.assertResult("second#1");
+        assertEquals(1, poster.posts(handler));
+        assertEquals(poster.threadName(handler), factory.threads.get(1));
+    }
+
+    @Test
+    public void sharesClientsOnlyWithTheSameHandler() {
+        Servant.setClientPoolingEnabled(true);
+        useBackend(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+
+        TestObserver<String> first = Servant.single(request("first").callbackHandler(handler)).test();
+        TestObserver<String> second = Servant.single(request("second").callbackHandler(handler)).test();
+        TestObserver<String> third = Servant.single(request("third").callbackHandler(other)).test();
+
+        assertEquals(2, factory.handlers.size());
+        assertSame(handler, factory.handlers.get(0));
+        assertSame(other, factory.handlers.get(1));
+        first.dispose();
+        second.dispose();
+        third.dispose();
+    }
+
+    private TestRequest request(Object key) {
+        return new TestRequest(context, servant.backend(), key);
+    }
+
+    private void useBackend(FakeBackend backend) {
+        servant.use(backend);
+        factory = new RecordingFactory(backend);
+        Servant.setClientFactory(factory);
+    }
+
+    /**
+     * Records the handlers clients are built with and the threads they are built on
+     */
+    private static class RecordingFactory implements ClientFactory {
+
+        private final ClientFactory factory;
+        private final List<Handler> handlers = new CopyOnWriteArrayList<>();
+        private final List<String> threads = new CopyOnWriteArrayList<>();
+
+        RecordingFactory(ClientFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public GoogleApiClient create(Context context,
+                                      GoogleApi googleApi,
+                                      Handler handler,
+                                      GoogleApiClient.ConnectionCallbacks connectionCallbacks,
+                                      GoogleApiClient.OnConnectionFailedListener connectionFailedListener) {
+            handlers.add(handler);
+            threads.add(Thread.currentThread().getName());
+            return factory.create(context, googleApi, handler, connectionCallbacks, connectionFailedListener);
+        }
+    }
+
+    /**
+     * Runs the actions posted to a handler on a thread of its own and counts them
+     */
+    private static class ThreadPoster implements HandlerPoster {
+
+        private final Map<Handler, ScheduledExecutorService> threads = new ConcurrentHashMap<>();
+        private final Map<Runnable, ScheduledFuture<?>> posted = new ConcurrentHashMap<>();
+        private final Map<Handler, AtomicInteger> posts = new ConcurrentHashMap<>();
+        private final Map<Handler, AtomicInteger> removals = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean postDelayed(Handler handler, Runnable action, long delayMillis) {
+            count(posts, handler);
+            posted.put(action, thread(handler).schedule(action, delayMillis, TimeUnit.MILLISECONDS));
+            return true;
+        }
+
+        @Override
+        public void removeCallbacks(Handler handler, Runnable action) {
+            count(removals, handler);
+            ScheduledFuture<?> future = posted.remove(action);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        int posts(Handler handler) {
+            AtomicInteger count = posts.get(handler);
+            return count == null ? 0 : count.get();
+        }
+
+        int removals(Handler handler) {
+            AtomicInteger count = removals.get(handler);
+            return count == null ? 0 : count.get();
+        }
+
+        String threadName(Handler handler) {
+            return "handler-" + System.identityHashCode(handler);
+        }
+
+        void shutdown() {
+            for (ScheduledExecutorService thread : threads.values()) {
+                thread.shutdownNow();
+            }
+        }
+
+        private synchronized ScheduledExecutorService thread(Handler handler) {
+            ScheduledExecutorService thread = threads.get(handler);
+            if (thread == null) {
+                String name = threadName(handler);
+                thread = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, name));
+                threads.put(handler, thread);
+            }
+            return thread;
+        }
+
+        private static void count(Map<Handler, AtomicInteger> counts, Handler handler) {
+            AtomicInteger count = new AtomicInteger();
+            AtomicInteger existing = counts.putIfAbsent(handler, count);
+            (existing == null ? count : existing).incrementAndGet();
+        }
+    }
+}
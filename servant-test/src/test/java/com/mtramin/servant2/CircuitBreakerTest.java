@@ -0,0 +1,205 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.location.ActivityRecognition;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.assertEquals;
+
+public class CircuitBreakerTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveFailureThreshold() {
+        new CircuitBreaker.Builder().failureThreshold(0);
+    }
+
+    @Test
+    public void opensAfterFailureThreshold() {
+        CircuitBreaker circuitBreaker = circuitBreaker(2, 1, TimeUnit.MINUTES);
+        FakeBackend backend = failingBackend(ConnectionResult.API_UNAVAILABLE);
+
+        request(backend).assertError(ConnectionException.class);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState(LocationServices.API));
+        request(backend).assertError(ConnectionException.class);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState(LocationServices.API));
+
+        request(backend).assertError(ServiceUnavailableException.class);
+        assertEquals(2, clientsCreated());
+    }
+
+    @Test
+    public void opensImmediatelyForUnavailableServices() {
+        CircuitBreaker circuitBreaker = circuitBreaker(3, 1, TimeUnit.MINUTES);
+        FakeBackend backend = failingBackend(ConnectionResult.SERVICE_UPDATING);
+
+        request(backend).assertError(ConnectionException.class);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState(LocationServices.API));
+        request(backend).assertError(ServiceUnavailableException.class);
+    }
+
+    @Test
+    public void keepsCircuitsOfOtherApisClosed() {
+        CircuitBreaker circuitBreaker = circuitBreaker(1, 1, TimeUnit.MINUTES);
+        FakeBackend backend = failingBackend(ConnectionResult.API_UNAVAILABLE);
+
+        request(backend).assertError(ConnectionException.class);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState(ActivityRecognition.API));
+        Servant.single(new TestRequest(context, ActivityRecognition.API, backend, "key")).test()
+                .assertError(ConnectionException.class);
+    }
+
+    @Test
+    public void resetsFailuresOnceConnected() {
+        CircuitBreaker circuitBreaker = circuitBreaker(2, 1, TimeUnit.MINUTES);
+
+        request(failingBackend(ConnectionResult.API_UNAVAILABLE)).assertError(ConnectionException.class);
+        request(servant.use(FakeBackend.create())).assertValue("key#1");
+        request(failingBackend(ConnectionResult.API_UNAVAILABLE)).assertError(ConnectionException.class);
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState(LocationServices.API));
+    }
+
+    @Test
+    public void closesOnceProbeConnected() throws InterruptedException {
+        CircuitBreaker circuitBreaker = circuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+        request(failingBackend(ConnectionResult.API_UNAVAILABLE)).assertError(ConnectionException.class);
+
+        Thread.sleep(30);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState(LocationServices.API));
+        request(servant.use(FakeBackend.create())).assertValue("key#1");
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState(LocationServices.API));
+    }
+
+    @Test
+    public void opensAgainOnceProbeFailed() throws InterruptedException {
+        CircuitBreaker circuitBreaker = circuitBreaker(3, 20, TimeUnit.MILLISECONDS);
+        request(failingBackend(ConnectionResult.SERVICE_DISABLED)).assertError(ConnectionException.class);
+
+        Thread.sleep(30);
+        request(failingBackend(ConnectionResult.API_UNAVAILABLE)).assertError(ConnectionException.class);
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState(LocationServices.API));
+    }
+
+    @Test
+    public void allowsAnotherProbeOnceProbeFailedForOtherReasons() throws InterruptedException {
+        CircuitBreaker circuitBreaker = circuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+        request(failingBackend(ConnectionResult.API_UNAVAILABLE)).assertError(ConnectionException.class);
+
+        Thread.sleep(30);
+        request(failingBackend(ConnectionResult.NETWORK_ERROR)).assertError(ConnectionException.class);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState(LocationServices.API));
+        request(servant.use(FakeBackend.create())).assertValue("key#1");
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState(LocationServices.API));
+    }
+
+    @Test
+    public void ignoresResolvableAndTransientFailures() {
+        CircuitBreaker circuitBreaker = circuitBreaker(1, 1, TimeUnit.MINUTES);
+        int[] errorCodes = {
+                ConnectionResult.SIGN_IN_REQUIRED,
+                ConnectionResult.RESOLUTION_REQUIRED,
+                ConnectionResult.NETWORK_ERROR,
+                ConnectionResult.INTERNAL_ERROR
+        };
+
+        for (int errorCode : errorCodes) {
+            request(failingBackend(errorCode)).assertError(ConnectionException.class);
+
+            assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState(LocationServices.API));
+        }
+    }
+
+    @Test
+    public void allowsSingleProbe() throws InterruptedException {
+        circuitBreaker(1, 20, TimeUnit.MILLISECONDS);
+        request(failingBackend(ConnectionResult.API_UNAVAILABLE)).assertError(ConnectionException.class);
+        Thread.sleep(30);
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+
+        TestObserver<String> probe = request(backend);
+        request(backend).assertError(ServiceUnavailableException.class);
+
+        probe.assertNotTerminated();
+        probe.dispose();
+    }
+
+    @Test
+    public void cachesUnavailableServices() {
+        Servant.setCircuitBreaker(new CircuitBreaker.Builder()
+                .cooldown(1, TimeUnit.MINUTES)
+                .build());
+
+        request(failingBackend(ConnectionResult.SERVICE_DISABLED)).assertError(ConnectionException.class);
+
+        // Google Play Services itself is unavailable, so all apis fail without being built
+        Servant.single(new TestRequest(context, ActivityRecognition.API, servant.backend(), "key")).test()
+                .assertError(ServiceUnavailableException.class);
+        assertEquals(1, clientsCreated());
+    }
+
+    private static CircuitBreaker circuitBreaker(int failureThreshold, long cooldown, TimeUnit unit) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker.Builder()
+                .failureThreshold(failureThreshold)
+                .cooldown(cooldown, unit)
+                // Google Play Services is not available in JVM tests
+                .checkAvailability(false)
+                .build();
+        Servant.setCircuitBreaker(circuitBreaker);
+        return circuitBreaker;
+    }
+
+    private FakeBackend failingBackend(int errorCode) {
+        return servant.use(new FakeBackend.Builder()
+                .connectionFailures(errorCode, 1)
+                .build());
+    }
+
+    private TestObserver<String> request(FakeBackend backend) {
+        return Servant.single(new TestRequest(context, backend, "key")).test();
+    }
+
+    private static int clientsCreated() {
+        int clientsCreated = 0;
+        for (ServantMetricsRecorder.ApiSnapshot snapshot
+                : ((ServantMetricsRecorder) Servant.getMetrics()).snapshot().values()) {
+            clientsCreated += snapshot.clientsCreated();
+        }
+        return clientsCreated;
+    }
+}
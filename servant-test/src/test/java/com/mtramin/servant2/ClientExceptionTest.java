@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.Status;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(Parameterized.class)
+public class ClientExceptionTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> exceptions() {
+        return Arrays.asList(new Object[][]{
+                {connection(ConnectionResult.NETWORK_ERROR), true},
+                {connection(ConnectionResult.INTERNAL_ERROR), true},
+                {connection(ConnectionResult.CANCELED), true},
+                {connection(ConnectionResult.TIMEOUT), true},
+                {connection(ConnectionResult.INTERRUPTED), true},
+                {connection(ConnectionResult.SERVICE_UPDATING), true},
+                {connection(ConnectionResult.SERVICE_MISSING), false},
+                {connection(ConnectionResult.SERVICE_VERSION_UPDATE_REQUIRED), false},
+                {connection(ConnectionResult.SERVICE_DISABLED), false},
+                {connection(ConnectionResult.SERVICE_INVALID), false},
+                {connection(ConnectionResult.SIGN_IN_REQUIRED), false},
+                {connection(ConnectionResult.SIGN_IN_FAILED), false},
+                {connection(ConnectionResult.INVALID_ACCOUNT), false},
+                {connection(ConnectionResult.RESOLUTION_REQUIRED), false},
+                {connection(ConnectionResult.DEVELOPER_ERROR), false},
+                {connection(ConnectionResult.LICENSE_CHECK_FAILED), false},
+                {connection(ConnectionResult.API_UNAVAILABLE), false},
+                {connection(ConnectionResult.SERVICE_MISSING_PERMISSION), false},
+                {connection(ConnectionResult.RESTRICTED_PROFILE), false},
+                {new ConnectionSuspendedException(GoogleApiClient.ConnectionCallbacks.CAUSE_NETWORK_LOST), true},
+                {new ConnectionSuspendedException(GoogleApiClient.ConnectionCallbacks.CAUSE_SERVICE_DISCONNECTED), true},
+                {new ClientTimeoutException("Client did not connect within 10ms."), true},
+                {new RateLimitedException("Rate limit exceeded.", 0), true},
+                {unavailable(ConnectionResult.SERVICE_UPDATING), false},
+                {unavailable(ConnectionResult.SERVICE_MISSING), false},
+                {unavailable(ConnectionResult.API_UNAVAILABLE), false},
+                {status(CommonStatusCodes.NETWORK_ERROR), true},
+                {status(CommonStatusCodes.INTERNAL_ERROR), true},
+                {status(CommonStatusCodes.INTERRUPTED), true},
+                {status(CommonStatusCodes.TIMEOUT), true},
+                {status(CommonStatusCodes.API_NOT_CONNECTED), true},
+                {status(CommonStatusCodes.ERROR), false},
+                {status(CommonStatusCodes.CANCELED), false},
+                {status(CommonStatusCodes.SIGN_IN_REQUIRED), false},
+                {status(CommonStatusCodes.RESOLUTION_REQUIRED), false},
+                {status(CommonStatusCodes.DEVELOPER_ERROR), false},
+        });
+    }
+
+    private final ClientException exception;
+    private final boolean retryable;
+
+    public ClientExceptionTest(ClientException exception, boolean retryable) {
+        this.exception = exception;
+        this.retryable = retryable;
+    }
+
+    @Test
+    public void isRetryable() {
+        assertEquals(retryable, exception.isRetryable());
+    }
+
+    @Test
+    public void isRetriedByDefaultPolicyOnlyIfRetryable() {
+        RetryPolicy policy = new RetryPolicy.Builder().maxRetries(1).build();
+
+        assertEquals(retryable, policy.shouldRetry(exception, 1));
+    }
+
+    private static ClientException connection(int errorCode) {
+        return new ConnectionException(new ConnectionResult(errorCode));
+    }
+
+    private static ClientException unavailable(int errorCode) {
+        return new ServiceUnavailableException(new ConnectionResult(errorCode), 0);
+    }
+
+    private static ClientException status(int statusCode) {
+        return new StatusException(new Status(statusCode));
+    }
+}
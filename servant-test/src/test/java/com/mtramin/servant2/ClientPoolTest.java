@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.ActivityRecognition;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.TestObserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClientPoolTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Before
+    public void setUp() {
+        Servant.setClientPoolingEnabled(true);
+    }
+
+    @Test
+    public void sharesClientBetweenConcurrentSubscribers() {
+        TestObserver<GoogleApiClient> first = Servant.observable(context, LocationServices.API).test();
+        TestObserver<GoogleApiClient> second = Servant.observable(context, LocationServices.API).test();
+
+        assertEquals(1, servant.backend().clients().size());
+        assertSame(first.values().get(0), second.values().get(0));
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    public void servesSubscribersAttachingWhileConnectingOnce() throws InterruptedException {
+        servant.use(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(1, TimeUnit.MILLISECONDS))
+                .build());
+        RetryPolicy retryPolicy = new RetryPolicy.Builder().maxRetries(1).build();
+
+        for (int i = 0; i < 100; i++) {
+            TestObserver<GoogleApiClient> first =
+                    Servant.resilientObservable(context, LocationServices.API, retryPolicy).test();
+            // Attaches before, while or after the shared client finishes connecting
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(20 * i));
+            TestObserver<GoogleApiClient> second =
+                    Servant.resilientObservable(context, LocationServices.API, retryPolicy).test();
+
+            awaitValue(first);
+            awaitValue(second);
+            Thread.sleep(2);
+            first.assertValueCount(1).assertNoErrors();
+            second.assertValueCount(1).assertNoErrors();
+            assertSame(first.values().get(0), second.values().get(0));
+            first.dispose();
+            second.dispose();
+        }
+    }
+
+    @Test
+    public void buildsOneClientPerApi() {
+        TestObserver<GoogleApiClient> location = Servant.observable(context, LocationServices.API).test();
+        TestObserver<GoogleApiClient> activity = Servant.observable(context, ActivityRecognition.API).test();
+
+        assertEquals(2, servant.backend().clients().size());
+        assertNotSame(location.values().get(0), activity.values().get(0));
+        location.dispose();
+        activity.dispose();
+    }
+
+    @Test
+    public void keepsSharedClientConnectedUntilLastSubscriberDisposed() {
+        TestObserver<GoogleApiClient> first = Servant.observable(context, LocationServices.API).test();
+        TestObserver<GoogleApiClient> second = Servant.observable(context, LocationServices.API).test();
+        GoogleApiClient client = first.values().get(0);
+
+        first.dispose();
+        assertTrue(client.isConnected());
+
+        second.dispose();
+        assertFalse(client.isConnected());
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    @Test
+    public void buildsOwnClientsWithoutPooling() {
+        Servant.setClientPoolingEnabled(false);
+
+        TestObserver<GoogleApiClient> first = Servant.observable(context, LocationServices.API).test();
+        TestObserver<GoogleApiClient> second = Servant.observable(context, LocationServices.API).test();
+
+        assertEquals(2, servant.backend().clients().size());
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    public void reusesLingeringClient() {
+        Servant.setKeepAlivePolicy(new KeepAlivePolicy.Builder().linger(1, TimeUnit.MINUTES).build());
+        TestObserver<GoogleApiClient> first = Servant.observable(context, LocationServices.API).test();
+        GoogleApiClient client = first.values().get(0);
+        first.dispose();
+
+        assertTrue(client.isConnected());
+        TestObserver<GoogleApiClient> second = Servant.observable(context, LocationServices.API).test();
+        assertSame(client, second.values().get(0));
+        second.dispose();
+    }
+
+    @Test
+    public void disconnectsLingeringClientOnceExpired() throws InterruptedException {
+        Servant.setKeepAlivePolicy(new KeepAlivePolicy.Builder().linger(20, TimeUnit.MILLISECONDS).build());
+        TestObserver<GoogleApiClient> observer = Servant.observable(context, LocationServices.API).test();
+        GoogleApiClient client = observer.values().get(0);
+        observer.dispose();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (client.isConnected() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(client.isConnected());
+    }
+
+    @Test
+    public void evictsLongestIdleClient() {
+        Servant.setKeepAlivePolicy(new KeepAlivePolicy.Builder()
+                .linger(1, TimeUnit.MINUTES)
+                .maxIdleClients(1)
+                .build());
+        TestObserver<GoogleApiClient> location = Servant.observable(context, LocationServices.API).test();
+        TestObserver<GoogleApiClient> activity = Servant.observable(context, ActivityRecognition.API).test();
+
+        location.dispose();
+        activity.dispose();
+
+        assertFalse(location.values().get(0).isConnected());
+        assertTrue(activity.values().get(0).isConnected());
+    }
+
+    @Test
+    public void evictsAllIdleClients() {
+        Servant.setKeepAlivePolicy(new KeepAlivePolicy.Builder().linger(1, TimeUnit.MINUTES).build());
+        TestObserver<GoogleApiClient> observer = Servant.observable(context, LocationServices.API).test();
+        observer.dispose();
+
+        ClientPool.evictIdle();
+
+        assertFalse(observer.values().get(0).isConnected());
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    @Test
+    public void prewarmsClientAheadOfFirstSubscriber() {
+        Disposable prewarmed = Servant.prewarm(context, LocationServices.API);
+        assertEquals(1, servant.backend().clients().size());
+        GoogleApiClient client = servant.backend().clients().get(0);
+        assertTrue(client.isConnected());
+
+        TestObserver<GoogleApiClient> observer = Servant.observable(context, LocationServices.API).test();
+        assertSame(client, observer.values().get(0));
+
+        prewarmed.dispose();
+        assertTrue(client.isConnected());
+        observer.dispose();
+        assertFalse(client.isConnected());
+    }
+
+    private static void awaitValue(TestObserver<GoogleApiClient> observer) throws InterruptedException {
+        for (int i = 0; i < 100 && observer.valueCount() == 0; i++) {
+            Thread.sleep(1);
+        }
+        observer.assertValueCount(1);
+    }
+}
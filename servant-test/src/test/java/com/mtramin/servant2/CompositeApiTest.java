@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.ActivityRecognition;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CompositeApiTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test
+    public void equalsCompositesOfEqualApisInEqualOrder() {
+        CompositeApi apis = locationAndActivity();
+
+        assertEquals(apis, locationAndActivity());
+        assertEquals(apis.hashCode(), locationAndActivity().hashCode());
+        assertNotEquals(apis, new CompositeApi.Builder()
+                .add(ActivityRecognition.API)
+                .add(LocationServices.API)
+                .build());
+        assertNotEquals(apis, new CompositeApi.Builder()
+                .add(LocationServices.API)
+                .build());
+        assertNotEquals(new CompositeApi.Builder().add(LocationServices.API).build(),
+                new ApiDefinition(LocationServices.API));
+    }
+
+    @Test
+    public void representsCompositeByFirstApi() {
+        assertSame(LocationServices.API, locationAndActivity().api());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requiresAnApi() {
+        new CompositeApi.Builder().build();
+    }
+
+    @Test
+    public void connectsOneClientForAllApis() {
+        TestObserver<GoogleApiClient> observer = Servant.observable(context, locationAndActivity()).test();
+
+        observer.assertValueCount(1);
+        assertEquals(1, servant.backend().clients().size());
+        assertEquals(locationAndActivity(), servant.backend().clients().get(0).googleApi());
+        observer.dispose();
+    }
+
+    @Test
+    public void sharesClientsOfEqualComposites() {
+        Servant.setClientPoolingEnabled(true);
+
+        TestObserver<GoogleApiClient> first = Servant.observable(context, locationAndActivity()).test();
+        TestObserver<GoogleApiClient> second = Servant.observable(context, locationAndActivity()).test();
+        TestObserver<GoogleApiClient> location = Servant.observable(context, LocationServices.API).test();
+
+        assertSame(first.values().get(0), second.values().get(0));
+        assertEquals(2, servant.backend().clients().size());
+        first.dispose();
+        second.dispose();
+        location.dispose();
+    }
+
+    @Test
+    public void limitsCompositesByFirstApi() {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        Servant.setConcurrencyLimit(LocationServices.API, 1);
+
+        TestObserver<String> location = Servant.single(new TestRequest(context, backend, "location")).test();
+        TestObserver<String> composite = Servant.single(new CompositeRequest(backend)).test();
+        assertEquals(1, backend.clients().size());
+
+        Servant.setConcurrencyLimit(LocationServices.API, 0);
+        Servant.setConcurrencyLimit(ActivityRecognition.API, 1);
+        TestObserver<String> activity =
+                Servant.single(new TestRequest(context, ActivityRecognition.API, backend, "activity")).test();
+        TestObserver<String> second = Servant.single(new CompositeRequest(backend)).test();
+        assertEquals(3, backend.clients().size());
+
+        location.dispose();
+        composite.dispose();
+        activity.dispose();
+        second.dispose();
+    }
+
+    @Test
+    public void measuresCompositesAsFirstApi() {
+        Servant.single(new CompositeRequest(servant.backend())).test().assertValue("composite");
+
+        assertEquals(1, ((ServantMetricsRecorder) Servant.getMetrics()).snapshot()
+                .get(LocationServices.API).clientsCreated());
+        assertNull(((ServantMetricsRecorder) Servant.getMetrics()).snapshot()
+                .get(ActivityRecognition.API));
+    }
+
+    private static CompositeApi locationAndActivity() {
+        return new CompositeApi.Builder()
+                .add(LocationServices.API)
+                .add(ActivityRecognition.API)
+                .build();
+    }
+
+    private class CompositeRequest extends GoogleApiClientRequestSingle<String, Status> {
+
+        private final FakeBackend backend;
+
+        CompositeRequest(FakeBackend backend) {
+            super(context, locationAndActivity());
+            this.backend = backend;
+        }
+
+        @Override
+        protected PendingResult<Status> createRequest(GoogleApiClient googleApiClient) {
+            return backend.request();
+        }
+
+        @Override
+        protected String unwrap(Status result) {
+            return "composite";
+        }
+    }
+}
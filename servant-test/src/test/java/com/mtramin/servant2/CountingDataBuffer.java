@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.data.AbstractDataBuffer;
+import com.google.android.gms.common.data.Freezable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fake {@link com.google.android.gms.common.data.DataBuffer} of numbered entries that counts how
+ * often entries were read and frozen and the buffer was released.
+ */
+public final class CountingDataBuffer extends AbstractDataBuffer<CountingDataBuffer.Entry> {
+
+    private final int count;
+    private final int failingIndex;
+    private final AtomicInteger reads = new AtomicInteger();
+    private final AtomicInteger freezes = new AtomicInteger();
+    private final AtomicInteger releases = new AtomicInteger();
+
+    /**
+     * @param count number of entries
+     */
+    public CountingDataBuffer(int count) {
+        this(count, -1);
+    }
+
+    /**
+     * @param count        number of entries
+     * @param failingIndex index of the entry that fails to freeze, {@code -1} for none
+     */
+    public CountingDataBuffer(int count, int failingIndex) {
+        super(null);
+        this.count = count;
+        this.failingIndex = failingIndex;
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public Entry get(int index) {
+        reads.incrementAndGet();
+        return new Entry(index, false);
+    }
+
+    @Override
+    public void release() {
+        releases.incrementAndGet();
+        super.release();
+    }
+
+    public int reads() {
+        return reads.get();
+    }
+
+    public int freezes() {
+        return freezes.get();
+    }
+
+    public int releases() {
+        return releases.get();
+    }
+
+    /**
+     * Entry that is only valid until the buffer was released, unless it was frozen
+     */
+    public final class Entry implements Freezable<Entry> {
+
+        private final int index;
+        private final boolean frozen;
+
+        Entry(int index, boolean frozen) {
+            this.index = index;
+            this.frozen = frozen;
+        }
+
+        public int index() {
+            return index;
+        }
+
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        @Override
+        public Entry freeze() {
+            if (index == failingIndex) {
+                throw new IllegalStateException("Entry " + index + " can not be frozen");
+            }
+            freezes.incrementAndGet();
+            return new Entry(index, true);
+        }
+
+        @Override
+        public boolean isDataValid() {
+            return frozen || releases.get() == 0;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.data.DataBuffer;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DataBufferTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test
+    public void releasesBufferOnComplete() {
+        CountingDataBuffer buffer = new CountingDataBuffer(3);
+
+        TestSubscriber<CountingDataBuffer.Entry> subscriber = entries(buffer).test();
+
+        subscriber.assertValueCount(3).assertComplete();
+        for (int i = 0; i < 3; i++) {
+            CountingDataBuffer.Entry entry = subscriber.values().get(i);
+            assertEquals(i, entry.index());
+            assertTrue(entry.isFrozen());
+            assertTrue(entry.isDataValid());
+        }
+        assertEquals(3, buffer.freezes());
+        assertEquals(1, buffer.releases());
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    @Test
+    public void releasesBufferOnError() {
+        CountingDataBuffer buffer = new CountingDataBuffer(5, 2);
+
+        TestSubscriber<CountingDataBuffer.Entry> subscriber = entries(buffer).test();
+
+        subscriber.assertValueCount(2).assertError(IllegalStateException.class);
+        assertEquals(2, buffer.freezes());
+        assertEquals(1, buffer.releases());
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    @Test
+    public void releasesBufferOnDispose() {
+        CountingDataBuffer buffer = new CountingDataBuffer(10);
+        TestSubscriber<CountingDataBuffer.Entry> subscriber = entries(buffer).test(2);
+
+        subscriber.dispose();
+
+        subscriber.assertValueCount(2).assertNotTerminated();
+        assertEquals(2, buffer.reads());
+        assertEquals(2, buffer.freezes());
+        assertEquals(1, buffer.releases());
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    @Test
+    public void readsEntriesAsTheyAreRequested() {
+        CountingDataBuffer buffer = new CountingDataBuffer(5);
+        TestSubscriber<CountingDataBuffer.Entry> subscriber = entries(buffer).test(0);
+
+        subscriber.assertNoValues();
+        assertEquals(0, buffer.reads());
+
+        subscriber.request(1);
+        subscriber.assertValueCount(1);
+        assertEquals(1, buffer.freezes());
+
+        subscriber.request(3);
+        subscriber.assertValueCount(4).assertNotComplete();
+        assertEquals(4, buffer.reads());
+        assertEquals(4, buffer.freezes());
+        assertEquals(0, buffer.releases());
+
+        subscriber.request(1);
+        subscriber.assertValueCount(5).assertComplete();
+        assertEquals(1, buffer.releases());
+    }
+
+    @Test
+    public void createsNoBufferForFailedRequests() {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestFailures(CommonStatusCodes.INTERNAL_ERROR, 1)
+                .build());
+        CountingDataBuffer buffer = new CountingDataBuffer(3);
+
+        TestSubscriber<CountingDataBuffer.Entry> subscriber =
+                Servant.dataBuffer(context, LocationServices.API, request(backend, buffer)).test();
+
+        subscriber.assertNoValues().assertError(StatusException.class);
+        assertEquals(0, buffer.reads());
+        assertTrue(backend.clients().isEmpty());
+    }
+
+    @Test
+    public void releasesResultWhenBufferFails() {
+        ReleasableResult[] results = new ReleasableResult[1];
+        DataBufferRequest<CountingDataBuffer.Entry, ReleasableResult> request =
+                new DataBufferRequest<CountingDataBuffer.Entry, ReleasableResult>() {
+                    @Override
+                    public PendingResult<? super ReleasableResult> createRequest(GoogleApiClient googleApiClient) {
+                        return servant.backend().request(ReleasableResult::new);
+                    }
+
+                    @Override
+                    public DataBuffer<CountingDataBuffer.Entry> buffer(ReleasableResult result) {
+                        results[0] = result;
+                        throw new IllegalStateException("No buffer");
+                    }
+                };
+
+        Servant.dataBuffer(context, LocationServices.API, request).test()
+                .assertNoValues()
+                .assertError(IllegalStateException.class);
+
+        assertTrue(results[0].isReleased());
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    @Test
+    public void completesEmptyBuffers() {
+        CountingDataBuffer buffer = new CountingDataBuffer(0);
+
+        entries(buffer).test(0).assertNoValues().assertComplete();
+
+        assertEquals(0, buffer.reads());
+        assertEquals(1, buffer.releases());
+    }
+
+    private Flowable<CountingDataBuffer.Entry> entries(CountingDataBuffer buffer) {
+        return Servant.dataBuffer(context, LocationServices.API, request(servant.backend(), buffer));
+    }
+
+    private static DataBufferRequest<CountingDataBuffer.Entry, ReleasableResult> request(
+            FakeBackend backend, CountingDataBuffer buffer) {
+        return new DataBufferRequest<CountingDataBuffer.Entry, ReleasableResult>() {
+            @Override
+            public PendingResult<? super ReleasableResult> createRequest(GoogleApiClient googleApiClient) {
+                return backend.request(ReleasableResult::new);
+            }
+
+            @Override
+            public DataBuffer<CountingDataBuffer.Entry> buffer(ReleasableResult result) {
+                return buffer;
+            }
+        };
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeGoogleApiClient;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.exceptions.MissingBackpressureException;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subscribers.TestSubscriber;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlowableTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+    private final CounterFlowable flowable = new CounterFlowable();
+
+    @Test
+    public void buffersValuesForSlowSubscribers() {
+        TestSubscriber<Integer> subscriber = Servant.flowable(flowable, BackpressureStrategy.BUFFER).test(1);
+
+        flowable.emit(5);
+        subscriber.assertValues(0);
+
+        subscriber.request(4);
+        subscriber.assertValues(0, 1, 2, 3, 4).assertNoErrors();
+        subscriber.dispose();
+    }
+
+    @Test
+    public void dropsValuesSlowSubscribersDidNotRequest() {
+        TestSubscriber<Integer> subscriber = Servant.flowable(flowable, BackpressureStrategy.DROP).test(2);
+
+        flowable.emit(5);
+        subscriber.request(1);
+        flowable.emit(2);
+
+        subscriber.assertValues(0, 1, 5).assertNoErrors();
+        subscriber.dispose();
+    }
+
+    @Test
+    public void keepsLatestValueForSlowSubscribers() {
+        TestSubscriber<Integer> subscriber = Servant.flowable(flowable, BackpressureStrategy.LATEST).test(1);
+
+        flowable.emit(5);
+        subscriber.request(1);
+
+        subscriber.assertValues(0, 4).assertNoErrors();
+        subscriber.dispose();
+    }
+
+    @Test
+    public void failsSlowSubscribersWithErrorStrategy() {
+        TestSubscriber<Integer> subscriber = Servant.flowable(flowable, BackpressureStrategy.ERROR).test(1);
+
+        flowable.emit(2);
+
+        subscriber.assertFailure(MissingBackpressureException.class, 0);
+        assertUnregisteredBeforeDisconnect();
+    }
+
+    @Test
+    public void dropsOldestValuesOnceBufferIsFull() {
+        TestSubscriber<Integer> subscriber =
+                Servant.flowable(flowable, 2, BackpressureOverflowStrategy.DROP_OLDEST).test(0);
+
+        flowable.emit(5);
+        subscriber.request(5);
+
+        subscriber.assertValues(3, 4).assertNoErrors();
+        subscriber.dispose();
+    }
+
+    @Test
+    public void dropsLatestBufferedValuesOnceBufferIsFull() {
+        TestSubscriber<Integer> subscriber =
+                Servant.flowable(flowable, 2, BackpressureOverflowStrategy.DROP_LATEST).test(0);
+
+        flowable.emit(5);
+        subscriber.request(5);
+
+        // Every new value replaces the latest buffered one
+        subscriber.assertValues(0, 4).assertNoErrors();
+        subscriber.dispose();
+    }
+
+    @Test
+    public void failsOnceBufferIsFull() {
+        TestSubscriber<Integer> subscriber =
+                Servant.flowable(flowable, 2, BackpressureOverflowStrategy.ERROR).test(0);
+
+        flowable.emit(3);
+
+        subscriber.assertError(MissingBackpressureException.class);
+        assertUnregisteredBeforeDisconnect();
+    }
+
+    @Test
+    public void unregistersListenerBeforeDisconnecting() {
+        TestSubscriber<Integer> subscriber = Servant.flowable(flowable, BackpressureStrategy.BUFFER).test();
+        FakeGoogleApiClient client = servant.backend().clients().get(0);
+        assertEquals(1, flowable.listeners.size());
+
+        subscriber.dispose();
+
+        assertUnregisteredBeforeDisconnect();
+        assertFalse(client.isConnected());
+    }
+
+    @Test
+    public void unregistersListenerOnComplete() {
+        TestSubscriber<Integer> subscriber = Servant.flowable(flowable, BackpressureStrategy.BUFFER).test();
+
+        flowable.complete();
+
+        subscriber.assertResult();
+        assertUnregisteredBeforeDisconnect();
+    }
+
+    private void assertUnregisteredBeforeDisconnect() {
+        assertTrue(flowable.listeners.isEmpty());
+        assertEquals(1, flowable.unregistered.get());
+        assertEquals(1, flowable.unregisteredWhileConnected.get());
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    /**
+     * Emits increasing numbers to its subscribers through a listener registered with the client
+     */
+    private class CounterFlowable extends GoogleApiClientFlowable<Integer> {
+
+        private final List<Consumer<Integer>> listeners = new CopyOnWriteArrayList<>();
+        private final List<Runnable> completions = new CopyOnWriteArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger unregistered = new AtomicInteger();
+        private final AtomicInteger unregisteredWhileConnected = new AtomicInteger();
+        private Consumer<Integer> listener;
+        private Runnable completion;
+
+        CounterFlowable() {
+            super(context, LocationServices.API);
+        }
+
+        void emit(int count) {
+            for (int i = 0; i < count; i++) {
+                int value = next.getAndIncrement();
+                for (Consumer<Integer> listener : listeners) {
+                    try {
+                        listener.accept(value);
+                    } catch (Exception e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+        }
+
+        void complete() {
+            for (Runnable completion : completions) {
+                completion.run();
+            }
+        }
+
+        @Override
+        protected void onFlowableClientConnected(GoogleApiClient googleApiClient) {
+            listener = this::onNext;
+            completion = this::onCompleted;
+            listeners.add(listener);
+            completions.add(completion);
+        }
+
+        @Override
+        protected void onFlowableClientDisconnecting(GoogleApiClient googleApiClient) {
+            unregistered.incrementAndGet();
+            if (googleApiClient.isConnected()) {
+                unregisteredWhileConnected.incrementAndGet();
+            }
+            listeners.remove(listener);
+            completions.remove(completion);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.ActivityRecognition;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightRequestsTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+    private FakeBackend backend;
+
+    @Before
+    public void setUp() {
+        backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(50, TimeUnit.MILLISECONDS))
+                .build());
+    }
+
+    @Test
+    public void coalescesConcurrentRequestsWithEqualKeys() throws InterruptedException {
+        TestRequest request = new TestRequest(context, backend, "key");
+        request.coalesceInFlight();
+
+        TestObserver<String> first = Servant.single(request).test();
+        TestObserver<String> second = Servant.single(request).test();
+
+        await(first).assertResult("key#1");
+        await(second).assertResult("key#1");
+        assertEquals(1, request.requests());
+    }
+
+    @Test
+    public void doesNotCoalesceRequestsWithDifferentKeys() throws InterruptedException {
+        TestRequest first = new TestRequest(context, backend, "first");
+        TestRequest second = new TestRequest(context, backend, "second");
+
+        TestObserver<String> firstObserver = Servant.single(first.coalesceInFlight()).test();
+        TestObserver<String> secondObserver = Servant.single(second.coalesceInFlight()).test();
+
+        await(firstObserver).assertResult("first#1");
+        await(secondObserver).assertResult("second#1");
+    }
+
+    @Test
+    public void doesNotCoalesceRequestsOfDifferentClasses() throws InterruptedException {
+        TestRequest request = new TestRequest(context, backend, "current");
+        TestRequest other = new TestRequest(context, backend, "current") {
+            @Override
+            protected String unwrap(Status result) {
+                return "other";
+            }
+        };
+
+        TestObserver<String> first = Servant.single(request.coalesceInFlight()).test();
+        TestObserver<String> second = Servant.single(other.coalesceInFlight()).test();
+
+        await(first).assertResult("current#1");
+        await(second).assertResult("other");
+    }
+
+    @Test
+    public void doesNotCoalesceRequestsOfDifferentApis() throws InterruptedException {
+        TestRequest request = new TestRequest(context, backend, "current");
+        TestRequest other = new TestRequest(context, ActivityRecognition.API, backend, "current");
+
+        TestObserver<String> first = Servant.single(request.coalesceInFlight()).test();
+        TestObserver<String> second = Servant.single(other.coalesceInFlight()).test();
+
+        await(first).assertResult("current#1");
+        await(second).assertResult("current#1");
+        assertEquals(1, request.requests());
+        assertEquals(1, other.requests());
+    }
+
+    @Test
+    public void sendsNewRequestOnceCompleted() throws InterruptedException {
+        TestRequest request = new TestRequest(context, backend, "key");
+        request.coalesceInFlight();
+
+        await(Servant.single(request).test()).assertResult("key#1");
+        await(Servant.single(request).test()).assertResult("key#2");
+    }
+
+    @Test
+    public void keepsSharedRequestForRemainingSubscribers() throws InterruptedException {
+        TestRequest request = new TestRequest(context, backend, "key");
+        request.coalesceInFlight();
+
+        TestObserver<String> disposed = Servant.single(request).test();
+        TestObserver<String> remaining = Servant.single(request).test();
+        disposed.dispose();
+
+        await(remaining).assertResult("key#1");
+        assertTrue(disposed.values().isEmpty());
+    }
+
+    private static <T> TestObserver<T> await(TestObserver<T> observer) throws InterruptedException {
+        assertTrue(observer.await(1, TimeUnit.SECONDS));
+        return observer;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class KeepAlivePolicyTest {
+
+    private final KeepAlivePolicy adaptive = new KeepAlivePolicy.Builder()
+            .adaptiveLinger(1, 10, TimeUnit.NANOSECONDS)
+            .build();
+
+    @Test
+    public void lingersForFixedTime() {
+        KeepAlivePolicy policy = new KeepAlivePolicy.Builder().linger(3, TimeUnit.NANOSECONDS).build();
+
+        assertEquals(3, policy.lingerNanos(-1));
+        assertEquals(3, policy.lingerNanos(100));
+    }
+
+    @Test
+    public void lingersForMaximumWithoutObservedGaps() {
+        assertEquals(10, adaptive.lingerNanos(-1));
+    }
+
+    @Test
+    public void lingersForTwiceTheAverageGap() {
+        assertEquals(6, adaptive.lingerNanos(3));
+    }
+
+    @Test
+    public void clampsLingerToBounds() {
+        assertEquals(1, adaptive.lingerNanos(0));
+        assertEquals(10, adaptive.lingerNanos(8));
+    }
+
+    @Test
+    public void lingersForMinimumIfSubscribersReturnTooLate() {
+        assertEquals(1, adaptive.lingerNanos(11));
+    }
+
+    @Test
+    public void disconnectsImmediatelyByDefault() {
+        assertEquals(0, KeepAlivePolicy.NONE.lingerNanos(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMaximumBelowMinimum() {
+        new KeepAlivePolicy.Builder().adaptiveLinger(2, 1, TimeUnit.SECONDS);
+    }
+}
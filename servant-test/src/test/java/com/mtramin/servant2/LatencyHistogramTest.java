@@ -0,0 +1,124 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    public void reportsZeroWithoutValues() {
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.mean());
+        assertEquals(0, snapshot.p99());
+        assertEquals(0, snapshot.max());
+    }
+
+    @Test
+    public void reportsSingleValue() {
+        histogram.record(1000);
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1, snapshot.count());
+        assertEquals(1000, snapshot.mean());
+        assertEquals(1000, snapshot.p50());
+        assertEquals(1000, snapshot.max());
+    }
+
+    @Test
+    public void boundsErrorOfPercentiles() {
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(100_000, snapshot.count());
+        assertEquals(50_000, snapshot.mean());
+        assertWithinError(50_000, snapshot.p50());
+        assertWithinError(90_000, snapshot.p90());
+        assertWithinError(99_000, snapshot.p99());
+        assertEquals(100_000, snapshot.max());
+    }
+
+    @Test
+    public void recordsNonPositiveValuesAsOneNanosecond() {
+        histogram.record(0);
+        histogram.record(-5);
+
+        assertEquals(2, histogram.snapshot().count());
+        assertEquals(1, histogram.snapshot().max());
+    }
+
+    @Test
+    public void recordsConcurrently() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int value = 1; value <= 10_000; value++) {
+                    histogram.record(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40_000, histogram.snapshot().count());
+        assertEquals(10_000, histogram.snapshot().max());
+    }
+
+    @Test
+    public void recordsMetricsOfServedRequests() {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestFailures(CommonStatusCodes.INTERNAL_ERROR, 1)
+                .build());
+
+        Servant.single(new TestRequest(new TestContext(), backend, "key")).test();
+
+        ServantMetricsRecorder.ApiSnapshot snapshot =
+                ((ServantMetricsRecorder) Servant.getMetrics()).snapshot().get(LocationServices.API);
+        assertEquals(1, snapshot.clientsCreated());
+        assertEquals(0, snapshot.activeClients());
+        assertEquals(1, snapshot.requestFailures());
+        assertEquals(1, snapshot.connectLatency().count());
+        assertEquals(1, snapshot.requestLatency().count());
+    }
+
+    private static void assertWithinError(long expected, long actual) {
+        assertTrue("expected " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected * 0.125);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PendingResultSingleTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final AtomicReference<ReleasableResult> result = new AtomicReference<>();
+
+    @Test
+    public void emitsUnwrappedResult() {
+        PendingResultSingle.create(LocationServices.API, null, request(servant.backend(), r -> "unwrapped"))
+                .test()
+                .assertResult("unwrapped");
+        assertFalse(result.get().isReleased());
+    }
+
+    @Test
+    public void releasesFailedResult() {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestFailures(CommonStatusCodes.INTERNAL_ERROR, 1)
+                .build());
+
+        PendingResultSingle.create(LocationServices.API, null, request(backend, r -> "unwrapped"))
+                .test()
+                .assertError(StatusException.class);
+        assertTrue(result.get().isReleased());
+    }
+
+    @Test
+    public void releasesResultIfUnwrapFails() {
+        IllegalStateException error = new IllegalStateException();
+
+        PendingResultSingle.create(LocationServices.API, null, request(servant.backend(), r -> {
+            throw error;
+        })).test().assertError(error);
+        assertTrue(result.get().isReleased());
+    }
+
+    @Test
+    public void cancelsRequestOnDispose() {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        AtomicReference<PendingResult<ReleasableResult>> pendingResult = new AtomicReference<>();
+
+        TestObserver<String> observer = PendingResultSingle.create(LocationServices.API, null,
+                new BatchRequest<String, ReleasableResult>() {
+                    @Override
+                    public PendingResult<ReleasableResult> createRequest(GoogleApiClient googleApiClient) {
+                        pendingResult.set(backend.request(ReleasableResult::new));
+                        return pendingResult.get();
+                    }
+
+                    @Override
+                    public String unwrap(ReleasableResult result) {
+                        return "unwrapped";
+                    }
+                }).test();
+        observer.dispose();
+
+        assertTrue(pendingResult.get().isCanceled());
+    }
+
+    private BatchRequest<String, ReleasableResult> request(FakeBackend backend,
+                                                           Unwrap unwrap) {
+        return new BatchRequest<String, ReleasableResult>() {
+            @Override
+            public PendingResult<ReleasableResult> createRequest(GoogleApiClient googleApiClient) {
+                return backend.request(status -> {
+                    ReleasableResult created = new ReleasableResult(status);
+                    result.set(created);
+                    return created;
+                });
+            }
+
+            @Override
+            public String unwrap(ReleasableResult result) {
+                return unwrap.unwrap(result);
+            }
+        };
+    }
+
+    private interface Unwrap {
+        String unwrap(ReleasableResult result);
+    }
+}
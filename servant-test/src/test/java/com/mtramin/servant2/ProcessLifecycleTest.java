@@ -0,0 +1,200 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.app.Application;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.FakeGoogleApiClient;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessLifecycleTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test
+    public void tracksNoConnectionsWhileDisabled() {
+        Disposable disposable = Servant.observable(context, LocationServices.API).subscribe();
+
+        assertTrue(ProcessLifecycle.connections().isEmpty());
+        disposable.dispose();
+    }
+
+    @Test
+    public void tracksConnectionsWhileEnabled() {
+        enable();
+        Disposable disposable = Servant.observable(context, LocationServices.API).subscribe();
+
+        assertEquals(1, ProcessLifecycle.connections().size());
+
+        disposable.dispose();
+        assertTrue(ProcessLifecycle.connections().isEmpty());
+    }
+
+    @Test
+    public void keepsTrackingConnectionsWhenEnabledAgain() {
+        enable();
+        Disposable disposable = Servant.observable(context, LocationServices.API).subscribe();
+        enable();
+
+        assertEquals(1, ProcessLifecycle.connections().size());
+        disposable.dispose();
+    }
+
+    @Test
+    public void keepsCountingStartedActivitiesWhenEnabledAgain() {
+        enable();
+        ProcessLifecycle lifecycle = Servant.getProcessLifecycle();
+        lifecycle.onActivityStarted(null);
+
+        Servant.enableLifecycleManagement(new Application(), 5, TimeUnit.SECONDS);
+
+        assertSame(lifecycle, Servant.getProcessLifecycle());
+        assertEquals(1, lifecycle.startedActivities());
+    }
+
+    @Test
+    public void startsCountingAgainOnceDisabled() {
+        enable();
+        Servant.getProcessLifecycle().onActivityStarted(null);
+        Servant.disableLifecycleManagement();
+
+        enable();
+
+        assertEquals(0, Servant.getProcessLifecycle().startedActivities());
+    }
+
+    @Test
+    public void forgetsConnectionsWhenDisabled() {
+        enable();
+        Disposable disposable = Servant.observable(context, LocationServices.API).subscribe();
+        Servant.disableLifecycleManagement();
+
+        assertTrue(ProcessLifecycle.connections().isEmpty());
+        disposable.dispose();
+    }
+
+    @Test
+    public void disconnectsFailedActions() {
+        servant.use(new FakeBackend.Builder()
+                .connectionFailures(ConnectionResult.SERVICE_DISABLED, 1)
+                .build());
+        enable();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Servant.actions(context, LocationServices.API, client -> {
+        }, error::set);
+
+        assertNotNull(error.get());
+        assertTrue(ProcessLifecycle.connections().isEmpty());
+    }
+
+    @Test
+    public void pausesAndResumesReconnectingClients() {
+        FakeBackend backend = servant.backend();
+        enable();
+        TestObserver<GoogleApiClient> observer = Servant.observable(context, LocationServices.API).test();
+        ClientConnection connection = ProcessLifecycle.connections().get(0);
+        FakeGoogleApiClient client = backend.clients().get(0);
+
+        assertTrue(connection.pause());
+        assertFalse(client.isConnected());
+
+        connection.resume();
+        assertTrue(client.isConnected());
+        observer.assertValueCount(2);
+        observer.dispose();
+    }
+
+    @Test
+    public void doesNotPauseSingleClients() {
+        servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        enable();
+        TestObserver<String> observer = Servant.single(new TestRequest(context, servant.backend(), "key")).test();
+
+        assertFalse(ProcessLifecycle.connections().get(0).pause());
+        observer.dispose();
+    }
+
+    @Test
+    public void doesNotPauseBlockingClients() throws InterruptedException {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(200, TimeUnit.MILLISECONDS))
+                .build());
+        enable();
+        TestObserver<String> observer = Servant.single(new TestRequest(context, backend, "key").blocking())
+                .subscribeOn(Schedulers.io())
+                .test();
+        List<ClientConnection> connections = awaitConnections();
+
+        assertFalse(connections.get(0).pause());
+        assertTrue(backend.clients().get(0).isConnected());
+        observer.awaitTerminalEvent();
+        observer.assertValue("key#1");
+    }
+
+    @Test
+    public void leavesIdleSharedConnectionsToExpire() {
+        Servant.setClientPoolingEnabled(true);
+        Servant.setKeepAlivePolicy(new KeepAlivePolicy.Builder().linger(1, TimeUnit.MINUTES).build());
+        enable();
+        Servant.single(new TestRequest(context, servant.backend(), "key")).test().assertValue("key#1");
+        ClientConnection connection = ProcessLifecycle.connections().get(0);
+
+        assertFalse(connection.pause());
+        assertTrue(servant.backend().clients().get(0).isConnected());
+    }
+
+    private static void enable() {
+        Servant.enableLifecycleManagement(new Application(), 1, TimeUnit.SECONDS);
+    }
+
+    private static List<ClientConnection> awaitConnections() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            List<ClientConnection> connections = ProcessLifecycle.connections();
+            if (!connections.isEmpty() && connections.get(0).client().isConnected()) {
+                return connections;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Client did not connect");
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositivePermits() {
+        new RateLimiter.Builder().rate(0, 1, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveBurst() {
+        new RateLimiter.Builder().burst(0);
+    }
+
+    @Test
+    public void grantsBurstImmediately() {
+        RateLimiter rateLimiter = new RateLimiter.Builder()
+                .rate(1, 1, TimeUnit.MINUTES)
+                .burst(3)
+                .build();
+
+        assertEquals(0, rateLimiter.acquire());
+        assertEquals(0, rateLimiter.acquire());
+        assertEquals(0, rateLimiter.acquire());
+        assertTrue(rateLimiter.acquire() > TimeUnit.SECONDS.toNanos(59));
+    }
+
+    @Test
+    public void reservesWaitingPermits() {
+        RateLimiter rateLimiter = new RateLimiter.Builder()
+                .rate(1, 1, TimeUnit.MINUTES)
+                .build();
+
+        assertEquals(0, rateLimiter.acquire());
+        long first = rateLimiter.acquire();
+        long second = rateLimiter.acquire();
+
+        assertTrue(first > TimeUnit.SECONDS.toNanos(59));
+        assertTrue(second > first + TimeUnit.SECONDS.toNanos(59));
+    }
+
+    @Test
+    public void doesNotReserveFailingPermits() {
+        RateLimiter rateLimiter = new RateLimiter.Builder()
+                .rate(1, 1, TimeUnit.MINUTES)
+                .waitForPermits(false)
+                .build();
+
+        assertEquals(0, rateLimiter.acquire());
+        long first = rateLimiter.acquire();
+        long second = rateLimiter.acquire();
+
+        assertTrue(first < 0);
+        assertTrue(second < 0);
+        assertTrue(second >= first - TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void failsRequestsOverTheLimit() {
+        Servant.setRateLimiter(LocationServices.API, new RateLimiter.Builder()
+                .rate(1, 1, TimeUnit.MINUTES)
+                .waitForPermits(false)
+                .build());
+
+        Servant.single(new TestRequest(context, servant.backend(), "first")).test().assertValue("first#1");
+        TestObserver<String> second = Servant.single(new TestRequest(context, servant.backend(), "second")).test();
+
+        second.assertError(RateLimitedException.class);
+        assertTrue(((RateLimitedException) second.errors().get(0)).getRetryAfterNanos() > 0);
+    }
+
+    @Test
+    public void delaysRequestsOverTheLimit() {
+        Servant.setRateLimiter(LocationServices.API, new RateLimiter.Builder()
+                .rate(1, 50, TimeUnit.MILLISECONDS)
+                .build());
+
+        long start = System.nanoTime();
+        Servant.single(new TestRequest(context, servant.backend(), "first")).test().assertValue("first#1");
+        TestObserver<String> second = Servant.single(new TestRequest(context, servant.backend(), "second")).test();
+
+        second.awaitTerminalEvent();
+        second.assertValue("second#1");
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(45));
+    }
+
+    @Test
+    public void neverSendsRequestsDisposedWhileWaitingForPermits() throws InterruptedException {
+        Servant.setRateLimiter(LocationServices.API, new RateLimiter.Builder()
+                .rate(1, 20, TimeUnit.MILLISECONDS)
+                .build());
+        Servant.single(new TestRequest(context, servant.backend(), "first")).test();
+        TestRequest second = new TestRequest(context, servant.backend(), "second");
+
+        Servant.single(second).test().dispose();
+        Thread.sleep(40);
+
+        assertEquals(0, second.requests());
+        assertEquals(1, clientsCreated());
+    }
+
+    @Test
+    public void buildsClientsOnceTheyHaveTheirPermit() {
+        Servant.setRateLimiter(LocationServices.API, new RateLimiter.Builder()
+                .rate(1, 50, TimeUnit.MILLISECONDS)
+                .build());
+        Servant.single(new TestRequest(context, servant.backend(), "first")).test().assertValue("first#1");
+
+        TestObserver<String> second = Servant.single(new TestRequest(context, servant.backend(), "second")).test();
+
+        assertEquals(1, clientsCreated());
+        second.awaitTerminalEvent();
+        second.assertValue("second#1");
+        assertEquals(2, clientsCreated());
+    }
+
+    private static long clientsCreated() {
+        return ((ServantMetricsRecorder) Servant.getMetrics()).snapshot()
+                .get(LocationServices.API).clientsCreated();
+    }
+
+    @Test
+    public void cancelsRequestsSentWhileDisposed() throws InterruptedException {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        Servant.setRateLimiter(LocationServices.API, new RateLimiter.Builder()
+                .rate(1, 1, TimeUnit.MILLISECONDS)
+                .build());
+        List<PendingResult<Status>> sent = new CopyOnWriteArrayList<>();
+        TestRequest request = new TestRequest(context, backend, "key") {
+            @Override
+            protected PendingResult<Status> createRequest(GoogleApiClient googleApiClient) {
+                PendingResult<Status> pendingResult = super.createRequest(googleApiClient);
+                sent.add(pendingResult);
+                return pendingResult;
+            }
+        };
+
+        for (int i = 0; i < 200; i++) {
+            // Disposed of around the time the permit is available
+            TestObserver<String> observer = Servant.single(request).test();
+            long until = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(i * 10 % 2000);
+            while (System.nanoTime() < until) {
+                Thread.yield();
+            }
+            observer.dispose();
+        }
+        Thread.sleep(20);
+
+        for (PendingResult<Status> pendingResult : sent) {
+            assertTrue(pendingResult.isCanceled());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestSchedulerTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+    private final List<Object> sent = new CopyOnWriteArrayList<>();
+
+    private FakeBackend backend;
+
+    @Before
+    public void setUp() {
+        backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        Servant.setConcurrencyLimit(LocationServices.API, 1);
+    }
+
+    @Test
+    public void queuesClientsOverTheLimit() {
+        TestObserver<String> first = Servant.single(request("first")).test();
+        TestObserver<String> second = Servant.single(request("second")).test();
+
+        assertEquals(1, backend.clients().size());
+        assertEquals(Arrays.<Object>asList("first"), sent);
+
+        first.dispose();
+        assertEquals(1, backend.clients().size());
+        assertEquals(Arrays.<Object>asList("first", "second"), sent);
+        second.dispose();
+        assertTrue(backend.clients().isEmpty());
+    }
+
+    @Test
+    public void admitsByPriority() {
+        TestObserver<String> first = Servant.single(request("first")).test();
+        TestObserver<String> low = Servant.single(request("low").priority(Priority.LOW)).test();
+        TestObserver<String> high = Servant.single(request("high").priority(Priority.HIGH)).test();
+
+        first.dispose();
+        high.dispose();
+        low.dispose();
+
+        assertEquals(Arrays.<Object>asList("first", "high", "low"), sent);
+    }
+
+    @Test
+    public void neverConnectsDisposedWaitingClients() {
+        TestObserver<String> first = Servant.single(request("first")).test();
+        Servant.single(request("second")).test().dispose();
+
+        first.dispose();
+
+        assertEquals(Arrays.<Object>asList("first"), sent);
+        assertTrue(backend.clients().isEmpty());
+    }
+
+    @Test
+    public void admitsWaitingBlockingClients() {
+        TestObserver<String> first = Servant.single(request("first")).test();
+        TestObserver<String> second = Servant.single(request("second").blocking())
+                .subscribeOn(Schedulers.io())
+                .test();
+
+        first.dispose();
+
+        assertTrue(awaitSent(2));
+        assertEquals(Arrays.<Object>asList("first", "second"), sent);
+        second.dispose();
+    }
+
+    @Test
+    public void neverConnectsClientsDisposedWhileTheyAreAdmitted() throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            TestObserver<String> first = Servant.single(request("first")).test();
+            TestObserver<String> second = Servant.single(request("second")).test();
+
+            // Admits the second client on one thread while it is disposed of on another
+            CountDownLatch latch = new CountDownLatch(1);
+            Thread thread = new Thread(() -> {
+                await(latch);
+                second.dispose();
+            });
+            thread.start();
+            latch.countDown();
+            first.dispose();
+            thread.join();
+
+            assertTrue("Leaked client in iteration " + i, backend.clients().isEmpty());
+        }
+
+        // No admission was leaked either
+        sent.clear();
+        TestObserver<String> last = Servant.single(request("last")).test();
+        assertEquals(Arrays.<Object>asList("last"), sent);
+        last.dispose();
+    }
+
+    private TestRequest request(Object key) {
+        return new TestRequest(context, backend, key) {
+            @Override
+            protected PendingResult<Status> createRequest(GoogleApiClient googleApiClient) {
+                sent.add(key);
+                return super.createRequest(googleApiClient);
+            }
+        };
+    }
+
+    private boolean awaitSent(int count) {
+        for (int i = 0; i < 100 && sent.size() < count; i++) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return sent.size() >= count;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
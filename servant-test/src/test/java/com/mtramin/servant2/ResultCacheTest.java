@@ -0,0 +1,117 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResultCacheTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private static final long TTL = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    public void returnsCachedResult() {
+        ResultCache cache = new ResultCache(2);
+        cache.put("key", "value", TTL);
+
+        assertEquals("value", cache.get("key"));
+    }
+
+    @Test
+    public void expiresResultsAfterTimeToLive() throws InterruptedException {
+        ResultCache cache = new ResultCache(2);
+        cache.put("key", "value", TimeUnit.MILLISECONDS.toNanos(1));
+
+        Thread.sleep(5);
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedResult() {
+        ResultCache cache = new ResultCache(2);
+        cache.put("first", 1, TTL);
+        cache.put("second", 2, TTL);
+        cache.get("first");
+
+        cache.put("third", 3, TTL);
+
+        assertEquals(1, cache.get("first"));
+        assertNull(cache.get("second"));
+        assertEquals(3, cache.get("third"));
+    }
+
+    @Test
+    public void evictsByWeight() {
+        ResultCache cache = new ResultCache(5, (key, value) -> ((String) value).length());
+        cache.put("first", "abc", TTL);
+        cache.put("second", "de", TTL);
+
+        cache.put("third", "f", TTL);
+
+        assertNull(cache.get("first"));
+        assertEquals("de", cache.get("second"));
+        assertEquals("f", cache.get("third"));
+    }
+
+    @Test
+    public void doesNotCacheResultsHeavierThanMaximum() {
+        ResultCache cache = new ResultCache(2, (key, value) -> 3);
+        cache.put("key", "value", TTL);
+
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void invalidatesResults() {
+        ResultCache cache = new ResultCache(4);
+        cache.put("first", 1, TTL);
+        cache.put("second", 2, TTL);
+
+        cache.invalidate("first");
+        assertNull(cache.get("first"));
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMaximum() {
+        new ResultCache(0);
+    }
+
+    @Test
+    public void servesCachedResultWithoutClient() {
+        ResultCache cache = new ResultCache(4);
+        TestRequest request = new TestRequest(new TestContext(), servant.backend(), "key");
+        request.cacheIn(cache, 1, TimeUnit.MINUTES);
+
+        Servant.single(request).test().assertResult("key#1");
+        Servant.single(request).test().assertResult("key#1");
+
+        assertEquals(1, request.requests());
+    }
+}
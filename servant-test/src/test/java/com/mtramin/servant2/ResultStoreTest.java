@@ -0,0 +1,210 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResultStoreTest {
+
+    private static final ResultSerializer<String> SERIALIZER = new ResultSerializer<String>() {
+        @Override
+        public void write(String value, DataOutput out) throws IOException {
+            out.writeUTF(value);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMaxAge() {
+        new ResultStore(context(), "store", 0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void readsWrittenResults() {
+        ResultStore store = new ResultStore(context(), "store");
+
+        store.write("key", "value", SERIALIZER);
+
+        assertEquals("value", read(store, "key"));
+        assertNull(read(store, "other"));
+    }
+
+    @Test
+    public void sharesResultsOfStoresWithEqualNames() {
+        new ResultStore(context(), "store").write("key", "value", SERIALIZER);
+        ResultStore other = new ResultStore(context(), "other");
+        other.write("key", "other", SERIALIZER);
+
+        assertEquals("value", read(new ResultStore(context(), "store"), "key"));
+        assertEquals("other", read(other, "key"));
+    }
+
+    @Test
+    public void ordersWritesAndReadsOfStoresWithEqualNames() {
+        for (int i = 0; i < 100; i++) {
+            new ResultStore(context(), "store").write("key", "value" + i, SERIALIZER);
+
+            assertEquals("value" + i, read(new ResultStore(context(), "store"), "key"));
+        }
+    }
+
+    @Test
+    public void replacesResults() {
+        ResultStore store = new ResultStore(context(), "store");
+
+        for (int i = 0; i < 100; i++) {
+            store.write("key", "value" + i, SERIALIZER);
+        }
+
+        assertEquals("value99", read(store, "key"));
+    }
+
+    @Test
+    public void invalidatesAfterPendingWrites() {
+        ResultStore store = new ResultStore(context(), "store");
+
+        for (int i = 0; i < 100; i++) {
+            store.write("key" + i, "value", SERIALIZER);
+            store.invalidate("key" + i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertNull(read(store, "key" + i));
+        }
+    }
+
+    @Test
+    public void keepsPendingWritesOfOtherKeys() {
+        ResultStore store = new ResultStore(context(), "store");
+
+        for (int i = 0; i < 100; i++) {
+            store.write("kept" + i, "value" + i, SERIALIZER);
+            store.invalidate("invalidated" + i);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("value" + i, read(store, "kept" + i));
+        }
+    }
+
+    @Test
+    public void storesWritesAfterInvalidation() {
+        ResultStore store = new ResultStore(context(), "store");
+        store.write("key", "old", SERIALIZER);
+
+        store.invalidateAll();
+        store.write("key", "new", SERIALIZER);
+
+        assertEquals("new", read(store, "key"));
+    }
+
+    @Test
+    public void invalidatesAllAfterPendingWrites() {
+        ResultStore store = new ResultStore(context(), "store");
+        for (int i = 0; i < 10; i++) {
+            store.write("key" + i, "value", SERIALIZER);
+        }
+
+        store.invalidateAll();
+
+        for (int i = 0; i < 10; i++) {
+            assertNull(read(store, "key" + i));
+        }
+    }
+
+    @Test
+    public void discardsResultsOlderThanMaxAge() throws InterruptedException {
+        ResultStore store = new ResultStore(context(), "store", 10, TimeUnit.MILLISECONDS);
+        store.write("key", "value", SERIALIZER);
+        assertEquals("value", read(store, "key"));
+
+        Thread.sleep(20);
+
+        assertNull(read(store, "key"));
+    }
+
+    @Test
+    public void discardsUnreadableResults() {
+        ResultStore store = new ResultStore(context(), "store");
+        store.write("key", "value", SERIALIZER);
+
+        TestObserver<String> observer = store.read("key", new ResultSerializer<String>() {
+            @Override
+            public void write(String value, DataOutput out) throws IOException {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public String read(DataInput in) throws IOException {
+                throw new IOException("unreadable");
+            }
+        }).test();
+
+        observer.awaitTerminalEvent();
+        observer.assertNoValues().assertComplete();
+        assertNull(read(store, "key"));
+    }
+
+    @Test
+    public void emitsStoredResultsBeforeFreshOnes() {
+        ResultStore store = new ResultStore(context(), "store");
+        store.write("key", "stale", SERIALIZER);
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(50, TimeUnit.MILLISECONDS))
+                .build());
+
+        TestObserver<String> observer = Servant.staleWhileRevalidate(
+                new TestRequest(context(), backend, "key").storeIn(store, SERIALIZER), true)
+                .test();
+
+        observer.awaitTerminalEvent();
+        observer.assertValues("stale", "key#1");
+        assertEquals("key#1", read(store, "key"));
+    }
+
+    private TestContext context() {
+        return new TestContext(folder.getRoot());
+    }
+
+    private static String read(ResultStore store, Object key) {
+        return store.read(key, SERIALIZER).blockingGet();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+    private final RetryPolicy retryPolicy = new RetryPolicy.Builder()
+            .maxRetries(2)
+            .backoff(1, 1, TimeUnit.MILLISECONDS)
+            .build();
+
+    @Test
+    public void retriesRetryableFailuresUpToMaximum() {
+        ClientException retryable = new ConnectionException(new ConnectionResult(ConnectionResult.NETWORK_ERROR));
+
+        assertTrue(retryPolicy.shouldRetry(retryable, 1));
+        assertTrue(retryPolicy.shouldRetry(retryable, 2));
+        assertFalse(retryPolicy.shouldRetry(retryable, 3));
+    }
+
+    @Test
+    public void doesNotRetryPermanentFailures() {
+        ClientException permanent = new ConnectionException(new ConnectionResult(ConnectionResult.SERVICE_DISABLED));
+
+        assertFalse(retryPolicy.shouldRetry(permanent, 1));
+    }
+
+    @Test
+    public void retriesFailuresMatchingPredicate() {
+        RetryPolicy policy = new RetryPolicy.Builder()
+                .retryIf(e -> e instanceof ConnectionException
+                        && ((ConnectionException) e).getErrorCode() == ConnectionResult.SERVICE_DISABLED)
+                .build();
+
+        assertTrue(policy.shouldRetry(new ConnectionException(new ConnectionResult(ConnectionResult.SERVICE_DISABLED)), 1));
+        assertFalse(policy.shouldRetry(new ConnectionException(new ConnectionResult(ConnectionResult.NETWORK_ERROR)), 1));
+    }
+
+    @Test
+    public void growsDelayExponentiallyUpToMaximum() {
+        RetryPolicy policy = new RetryPolicy.Builder()
+                .backoff(1, 5, TimeUnit.SECONDS)
+                .jitter(0)
+                .build();
+
+        assertEquals(TimeUnit.SECONDS.toNanos(1), policy.delayNanos(1));
+        assertEquals(TimeUnit.SECONDS.toNanos(2), policy.delayNanos(2));
+        assertEquals(TimeUnit.SECONDS.toNanos(4), policy.delayNanos(3));
+        assertEquals(TimeUnit.SECONDS.toNanos(5), policy.delayNanos(4));
+    }
+
+    @Test
+    public void randomizesDelayWithinJitter() {
+        RetryPolicy policy = new RetryPolicy.Builder()
+                .backoff(1, 1, TimeUnit.SECONDS)
+                .jitter(0.5)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            long delay = policy.delayNanos(1);
+            assertTrue(delay >= TimeUnit.MILLISECONDS.toNanos(500));
+            assertTrue(delay <= TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    @Test
+    public void keepsResilientObservableOnSharedClientRetrying() {
+        Servant.setClientPoolingEnabled(true);
+        TestObserver<GoogleApiClient> plain = Servant.observable(context, LocationServices.API).test();
+        TestObserver<GoogleApiClient> resilient =
+                Servant.resilientObservable(context, LocationServices.API, retryPolicy).test();
+
+        assertNotSame(plain.values().get(0), resilient.values().get(0));
+        servant.backend().suspendAll(GoogleApiClient.ConnectionCallbacks.CAUSE_NETWORK_LOST);
+
+        plain.assertError(ConnectionSuspendedException.class);
+        resilient.assertValueCount(2).assertNotTerminated();
+        resilient.dispose();
+    }
+
+    @Test
+    public void sharesClientBetweenSubscribersWithEqualPolicy() {
+        Servant.setClientPoolingEnabled(true);
+        TestObserver<GoogleApiClient> first =
+                Servant.resilientObservable(context, LocationServices.API, retryPolicy).test();
+        TestObserver<GoogleApiClient> second =
+                Servant.resilientObservable(context, LocationServices.API, retryPolicy).test();
+
+        assertEquals(1, servant.backend().clients().size());
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    public void retriesFailedConnectionsOfSinglesAndCompletables() throws InterruptedException {
+        servant.use(new FakeBackend.Builder()
+                .connectionFailures(ConnectionResult.NETWORK_ERROR, 1)
+                .build());
+
+        TestObserver<String> single = Servant.single(new ConnectedSingle().retryPolicy(retryPolicy)).test();
+        assertTrue(single.await(1, TimeUnit.SECONDS));
+        single.assertError(ConnectionException.class);
+        assertEquals(3, connectionFailures());
+
+        TestObserver<Void> completable =
+                Servant.completable(new ConnectedCompletable().retryPolicy(retryPolicy)).test();
+        assertTrue(completable.await(1, TimeUnit.SECONDS));
+        completable.assertError(ConnectionException.class);
+        assertEquals(6, connectionFailures());
+    }
+
+    @Test
+    public void sharesClientsOfSinglesAndCompletablesOnlyWithEqualPolicy() {
+        Servant.setClientPoolingEnabled(true);
+        servant.use(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+
+        TestObserver<String> first = Servant.single(new ConnectedSingle().retryPolicy(retryPolicy)).test();
+        TestObserver<Void> second =
+                Servant.completable(new ConnectedCompletable().retryPolicy(retryPolicy)).test();
+        assertEquals(1, servant.backend().clients().size());
+
+        TestObserver<String> third = Servant.single(new ConnectedSingle()).test();
+        assertEquals(2, servant.backend().clients().size());
+
+        first.dispose();
+        second.dispose();
+        third.dispose();
+    }
+
+    private static long connectionFailures() {
+        return ((ServantMetricsRecorder) Servant.getMetrics()).snapshot()
+                .get(LocationServices.API).connectionFailures();
+    }
+
+    private class ConnectedSingle extends GoogleApiClientSingle<String> {
+
+        ConnectedSingle() {
+            super(context, LocationServices.API);
+        }
+
+        @Override
+        protected void onSingleClientConnected(GoogleApiClient googleApiClient) {
+            onSuccess("connected");
+        }
+    }
+
+    private class ConnectedCompletable extends GoogleApiClientCompletable {
+
+        ConnectedCompletable() {
+            super(context, LocationServices.API);
+        }
+
+        @Override
+        protected void onCompletableClientConnected(GoogleApiClient googleApiClient) {
+            onCompleted();
+        }
+    }
+}
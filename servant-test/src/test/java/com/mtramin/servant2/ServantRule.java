@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.location.ActivityRecognition;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+
+import org.junit.rules.ExternalResource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves all clients from a {@link FakeBackend} during a test and restores the default
+ * configuration of {@link Servant} afterwards, including shared clients that are still idle.
+ */
+public final class ServantRule extends ExternalResource {
+
+    private FakeBackend backend = FakeBackend.create();
+
+    /**
+     * @return the backend serving all clients, {@link FakeBackend#create()} unless replaced
+     */
+    public FakeBackend backend() {
+        return backend;
+    }
+
+    /**
+     * Serves all clients of the test from the given backend.
+     *
+     * @param backend backend to serve clients from
+     * @return the given backend
+     */
+    public FakeBackend use(FakeBackend backend) {
+        this.backend = backend;
+        Servant.setClientFactory(backend);
+        return backend;
+    }
+
+    @Override
+    protected void before() {
+        Servant.setClientFactory(backend);
+    }
+
+    @Override
+    protected void after() {
+        ClientPool.evictIdle();
+        Servant.disableLifecycleManagement();
+
+        Servant.setClientFactory(ClientFactory.DEFAULT);
+        Servant.setClientPoolingEnabled(false);
+        Servant.setConnectTimeout(0, TimeUnit.NANOSECONDS);
+        Servant.setRequestTimeout(0, TimeUnit.NANOSECONDS);
+        Servant.setRetryPolicy(RetryPolicy.NONE);
+        Servant.setKeepAlivePolicy(KeepAlivePolicy.NONE);
+        Servant.setConcurrencyLimit(0);
+        Servant.setConcurrencyLimit(LocationServices.API, 0);
+        Servant.setConcurrencyLimit(ActivityRecognition.API, 0);
+        Servant.setRateLimiter(LocationServices.API, null);
+        Servant.setRateLimiter(ActivityRecognition.API, null);
+        Servant.setCircuitBreaker(null);
+        Servant.setCallbackHandler(null);
+        Servant.setMetrics(new ServantMetricsRecorder());
+        BaseClient.testMainThread = null;
+        ClientConnection.handlerPoster = HandlerPoster.DEFAULT;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServantTraceTest {
+
+    @Test
+    public void dumpsRecordedEvents() {
+        Object source = new Object();
+        ServantTrace.record(ServantTrace.PAUSE, null, source, 42);
+
+        String[] lines = ServantTrace.dump().split("\n");
+        String last = lines[lines.length - 1];
+
+        assertTrue(last, last.contains(" PAUSE value=42 source=java.lang.Object@"
+                + Integer.toHexString(System.identityHashCode(source)) + " api=null thread="
+                + Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void dumpsJson() {
+        ServantTrace.record(ServantTrace.RESUME, null, this, 7);
+
+        String json = ServantTrace.dumpJson();
+
+        assertTrue(json, json.startsWith("[{\"time\":"));
+        assertTrue(json, json.endsWith("\"}]"));
+        assertTrue(json, json.contains("\"event\":\"RESUME\",\"value\":7,"));
+    }
+
+    @Test
+    public void dumpsOnlyWholeEvents() throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                Thread current = Thread.currentThread();
+                while (running.get()) {
+                    // The value always matches the thread, unless the event is torn
+                    ServantTrace.record(ServantTrace.SERVED, null, current, (int) current.getId());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        try {
+            for (int dump = 0; dump < 200; dump++) {
+                for (String line : ServantTrace.dump().split("\n")) {
+                    if (!line.contains(" SERVED ")) {
+                        continue;
+                    }
+                    String value = line.substring(line.indexOf(" value=") + 7, line.indexOf(" source="));
+                    String threadId = line.substring(line.lastIndexOf('(') + 1, line.lastIndexOf(')'));
+                    assertEquals(line, threadId, value);
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+    }
+
+    @Test
+    public void keepsLastEvents() {
+        for (int i = 0; i < ServantTrace.CAPACITY * 2; i++) {
+            ServantTrace.record(ServantTrace.SUBSCRIBED, null, this, i);
+        }
+
+        String[] lines = ServantTrace.dump().split("\n");
+
+        assertEquals(ServantTrace.CAPACITY, lines.length);
+        assertTrue(lines[0], lines[0].contains("value=" + ServantTrace.CAPACITY + " "));
+        assertTrue(lines[lines.length - 1],
+                lines[lines.length - 1].contains("value=" + (ServantTrace.CAPACITY * 2 - 1) + " "));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeGoogleApiClient;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subscribers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriptionTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test
+    public void emitsConcurrentSingleSubscriptionsToTheirOwnSubscriber() {
+        Single<GoogleApiClient> single = Servant.single(new ClientSingle(context));
+        List<TestObserver<GoogleApiClient>> observers = new ArrayList<>();
+
+        for (int i = 0; i < 16; i++) {
+            observers.add(single.subscribeOn(Schedulers.io()).test());
+        }
+
+        Set<GoogleApiClient> clients = new HashSet<>();
+        for (TestObserver<GoogleApiClient> observer : observers) {
+            observer.awaitTerminalEvent();
+            observer.assertValueCount(1);
+            clients.add(observer.values().get(0));
+        }
+        assertEquals(16, clients.size());
+    }
+
+    @Test
+    public void emitsFlowableSubscriptionsToTheirOwnSubscriber() {
+        ListenerFlowable flowable = new ListenerFlowable(context);
+        TestSubscriber<GoogleApiClient> first = Servant.flowable(flowable, BackpressureStrategy.BUFFER).test();
+        TestSubscriber<GoogleApiClient> second = Servant.flowable(flowable, BackpressureStrategy.BUFFER).test();
+
+        first.assertValueCount(1);
+        second.assertValueCount(1);
+        assertNotSame(first.values().get(0), second.values().get(0));
+
+        first.dispose();
+        assertEquals(1, flowable.unregistered.size());
+        assertEquals(first.values().get(0), flowable.unregistered.get(0));
+        assertTrue(second.values().get(0).isConnected());
+        second.dispose();
+        assertEquals(second.values().get(0), flowable.unregistered.get(1));
+    }
+
+    @Test
+    public void resubscribesFlowables() {
+        ListenerFlowable flowable = new ListenerFlowable(context);
+
+        Servant.flowable(flowable, BackpressureStrategy.BUFFER).test().assertValueCount(1).dispose();
+        TestSubscriber<GoogleApiClient> again = Servant.flowable(flowable, BackpressureStrategy.BUFFER).test();
+
+        again.assertValueCount(1);
+        assertTrue(again.values().get(0).isConnected());
+        again.dispose();
+        assertEquals(2, flowable.unregistered.size());
+    }
+
+    @Test
+    public void connectsObservableSubscriptionsSeparately() {
+        Observable<GoogleApiClient> observable = Servant.observable(context, LocationServices.API);
+        TestObserver<GoogleApiClient> first = observable.test();
+        TestObserver<GoogleApiClient> second = observable.test();
+        FakeGoogleApiClient firstClient = (FakeGoogleApiClient) first.values().get(0);
+
+        first.dispose();
+
+        assertFalse(firstClient.isConnected());
+        assertTrue(second.values().get(0).isConnected());
+        second.dispose();
+    }
+
+    /**
+     * Emits its connected client
+     */
+    private static class ClientSingle extends GoogleApiClientSingle<GoogleApiClient> {
+
+        ClientSingle(Context context) {
+            super(context, LocationServices.API);
+        }
+
+        @Override
+        protected void onSingleClientConnected(GoogleApiClient googleApiClient) {
+            onSuccess(googleApiClient);
+        }
+    }
+
+    /**
+     * Emits its connected client as if a listener was registered with it
+     */
+    private static class ListenerFlowable extends GoogleApiClientFlowable<GoogleApiClient> {
+
+        final List<GoogleApiClient> unregistered = new CopyOnWriteArrayList<>();
+
+        ListenerFlowable(Context context) {
+            super(context, LocationServices.API);
+        }
+
+        @Override
+        protected void onFlowableClientConnected(GoogleApiClient googleApiClient) {
+            onNext(googleApiClient);
+        }
+
+        @Override
+        protected void onFlowableClientDisconnecting(GoogleApiClient googleApiClient) {
+            unregistered.add(googleApiClient);
+        }
+    }
+}
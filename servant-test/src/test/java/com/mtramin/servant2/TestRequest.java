@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.test.FakeBackend;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request of a {@link FakeBackend} that emits its key and the number of requests that were sent
+ * for it, e.g. {@code "key#1"}.
+ */
+public class TestRequest extends GoogleApiClientRequestSingle<String, Status> {
+
+    private final FakeBackend backend;
+    private final Object key;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    public TestRequest(Context context, FakeBackend backend, Object key) {
+        this(context, LocationServices.API, backend, key);
+    }
+
+    public TestRequest(Context context, Api api, FakeBackend backend, Object key) {
+        super(context, api);
+        this.backend = backend;
+        this.key = key;
+    }
+
+    /**
+     * @return number of requests that were sent, shared by all subscriptions
+     */
+    public int requests() {
+        return requests.get();
+    }
+
+    @Override
+    protected Object requestKey() {
+        return key;
+    }
+
+    @Override
+    protected PendingResult<Status> createRequest(GoogleApiClient googleApiClient) {
+        requests.incrementAndGet();
+        return backend.request();
+    }
+
+    @Override
+    protected String unwrap(Status result) {
+        return key + "#" + requests.get();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.mtramin.servant2.test.FakeBackend;
+import com.mtramin.servant2.test.Latency;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class TimeoutTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test
+    public void failsClientsThatDoNotConnectInTime() throws InterruptedException {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        Servant.setConnectTimeout(20, TimeUnit.MILLISECONDS);
+
+        TestObserver<String> observer = Servant.single(new TestRequest(context, backend, "key")).test();
+
+        assertTrue(observer.await(1, TimeUnit.SECONDS));
+        observer.assertError(ClientTimeoutException.class);
+    }
+
+    @Test
+    public void failsRequestsWithoutResultInTime() throws InterruptedException {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestLatency(Latency.fixed(1, TimeUnit.MINUTES))
+                .build());
+        Servant.setRequestTimeout(20, TimeUnit.MILLISECONDS);
+
+        TestObserver<String> observer = Servant.single(new TestRequest(context, backend, "key")).test();
+
+        assertTrue(observer.await(1, TimeUnit.SECONDS));
+        observer.assertError(ClientTimeoutException.class);
+    }
+
+    @Test
+    public void overridesDefaultTimeoutsPerRequest() throws InterruptedException {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(50, TimeUnit.MILLISECONDS))
+                .build());
+        Servant.setConnectTimeout(10, TimeUnit.MILLISECONDS);
+
+        TestObserver<String> observer = Servant.single(new TestRequest(context, backend, "key")
+                .timeout(1, 1, TimeUnit.SECONDS))
+                .test();
+
+        assertTrue(observer.await(1, TimeUnit.SECONDS));
+        observer.assertResult("key#1");
+    }
+
+    @Test
+    public void cancelsConnectTimeoutOnceConnected() throws InterruptedException {
+        Servant.setConnectTimeout(20, TimeUnit.MILLISECONDS);
+
+        TestObserver<String> observer = Servant.single(new TestRequest(context, servant.backend(), "key")).test();
+        Thread.sleep(50);
+
+        observer.assertResult("key#1");
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.location.LocationServices;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnwrapOnTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+    private final TestScheduler scheduler = new TestScheduler();
+
+    @Test
+    public void unwrapsOnTheGivenScheduler() {
+        ReleasableRequest request = new ReleasableRequest(false);
+
+        TestObserver<String> observer = Servant.single(request.unwrapOn(scheduler)).test();
+
+        observer.assertEmpty();
+        assertEquals(0, request.unwraps.get());
+
+        scheduler.triggerActions();
+
+        observer.assertResult("unwrapped");
+        assertEquals(1, request.unwraps.get());
+        assertFalse(request.result.get().isReleased());
+    }
+
+    @Test
+    public void unwrapsOnTheDeliveringThreadByDefault() {
+        ReleasableRequest request = new ReleasableRequest(false);
+
+        Servant.single(request).test().assertResult("unwrapped");
+
+        assertEquals(1, request.unwraps.get());
+    }
+
+    @Test
+    public void releasesResultWhenUnwrapFails() {
+        ReleasableRequest request = new ReleasableRequest(true);
+
+        TestObserver<String> observer = Servant.single(request.unwrapOn(scheduler)).test();
+        scheduler.triggerActions();
+
+        observer.assertFailure(IllegalStateException.class);
+        assertTrue(request.result.get().isReleased());
+    }
+
+    @Test
+    public void releasesResultWhenDisposedBeforeDelivery() {
+        ReleasableRequest request = new ReleasableRequest(false);
+
+        TestObserver<String> observer = Servant.single(request.unwrapOn(scheduler)).test();
+        assertFalse(request.result.get().isReleased());
+
+        observer.dispose();
+        scheduler.triggerActions();
+
+        observer.assertEmpty();
+        assertEquals(0, request.unwraps.get());
+        assertTrue(request.result.get().isReleased());
+    }
+
+    private class ReleasableRequest extends GoogleApiClientRequestSingle<String, ReleasableResult> {
+
+        private final boolean failing;
+        private final AtomicInteger unwraps = new AtomicInteger();
+        private final AtomicReference<ReleasableResult> result = new AtomicReference<>();
+
+        ReleasableRequest(boolean failing) {
+            super(context, LocationServices.API);
+            this.failing = failing;
+        }
+
+        @Override
+        protected PendingResult<ReleasableResult> createRequest(GoogleApiClient googleApiClient) {
+            return servant.backend().request(status -> {
+                ReleasableResult result = new ReleasableResult(status);
+                this.result.set(result);
+                return result;
+            });
+        }
+
+        @Override
+        protected String unwrap(ReleasableResult result) {
+            unwraps.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("Result can not be unwrapped");
+            }
+            return "unwrapped";
+        }
+    }
+}
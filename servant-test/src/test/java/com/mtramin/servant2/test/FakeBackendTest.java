@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2.test;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationServices;
+import com.mtramin.servant2.ConnectionException;
+import com.mtramin.servant2.GoogleApiClientRequestSingle;
+import com.mtramin.servant2.GoogleApiClientSingle;
+import com.mtramin.servant2.RetryPolicy;
+import com.mtramin.servant2.Servant;
+import com.mtramin.servant2.ServantRule;
+import com.mtramin.servant2.StatusException;
+import com.mtramin.servant2.TestContext;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FakeBackendTest {
+
+    @Rule
+    public final ServantRule servant = new ServantRule();
+
+    private final TestContext context = new TestContext();
+
+    @Test
+    public void connectsClientsImmediately() {
+        Servant.single(new ClientSingle(context))
+                .test()
+                .assertValueCount(1)
+                .assertComplete();
+    }
+
+    @Test
+    public void connectsClientsAfterLatency() throws InterruptedException {
+        servant.use(new FakeBackend.Builder()
+                .connectLatency(Latency.fixed(20, TimeUnit.MILLISECONDS))
+                .build());
+
+        TestObserver<GoogleApiClient> observer = Servant.single(new ClientSingle(context)).test();
+        observer.assertNoValues();
+
+        assertTrue(observer.await(1, TimeUnit.SECONDS));
+        observer.assertValueCount(1);
+    }
+
+    @Test
+    public void failsConnections() {
+        servant.use(new FakeBackend.Builder()
+                .connectionFailures(ConnectionResult.SERVICE_DISABLED, 1)
+                .build());
+
+        TestObserver<GoogleApiClient> observer = Servant.single(new ClientSingle(context)).test();
+
+        observer.assertError(ConnectionException.class);
+        assertEquals(ConnectionResult.SERVICE_DISABLED,
+                ((ConnectionException) observer.errors().get(0)).getErrorCode());
+    }
+
+    @Test
+    public void failsRequests() {
+        FakeBackend backend = servant.use(new FakeBackend.Builder()
+                .requestFailures(CommonStatusCodes.NETWORK_ERROR, 1)
+                .build());
+
+        Servant.single(new StatusRequest(context, backend))
+                .test()
+                .assertError(StatusException.class);
+    }
+
+    @Test
+    public void detachesDisconnectedClients() {
+        Servant.single(new ClientSingle(context)).test();
+
+        assertTrue(servant.backend().clients().isEmpty());
+    }
+
+    @Test
+    public void reconnectsSuspendedClients() {
+        RetryPolicy retryPolicy = new RetryPolicy.Builder()
+                .backoff(1, 1, TimeUnit.MILLISECONDS)
+                .build();
+        TestObserver<GoogleApiClient> observer =
+                Servant.resilientObservable(context, LocationServices.API, retryPolicy).test();
+        FakeGoogleApiClient client = servant.backend().clients().get(0);
+
+        servant.backend().suspendAll(GoogleApiClient.ConnectionCallbacks.CAUSE_NETWORK_LOST);
+
+        // Suspended clients reconnect immediately without a connect latency
+        assertTrue(client.isConnected());
+        observer.assertValueCount(2).assertNotTerminated();
+        observer.dispose();
+    }
+
+    static final class ClientSingle extends GoogleApiClientSingle<GoogleApiClient> {
+
+        ClientSingle(TestContext context) {
+            super(context, LocationServices.API);
+        }
+
+        @Override
+        protected void onSingleClientConnected(GoogleApiClient googleApiClient) {
+            onSuccess(googleApiClient);
+        }
+    }
+
+    static final class StatusRequest extends GoogleApiClientRequestSingle<Status, Status> {
+
+        private final FakeBackend backend;
+
+        StatusRequest(TestContext context, FakeBackend backend) {
+            super(context, LocationServices.API);
+            this.backend = backend;
+        }
+
+        @Override
+        protected Status unwrap(Status result) {
+            return result;
+        }
+
+        @Override
+        protected PendingResult<Status> createRequest(GoogleApiClient googleApiClient) {
+            return backend.request();
+        }
+    }
+}
@@ -3,12 +3,14 @@ package com.mtramin.servant2;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.google.android.gms.common.api.GoogleApiClient;
+
 /**
  * Definition of a Google API that does not provide/need any options
  */
 class ApiDefinition implements GoogleApi {
 
-    private com.google.android.gms.common.api.Api api;
+    private final com.google.android.gms.common.api.Api api;
 
     ApiDefinition(com.google.android.gms.common.api.Api api) {
         this.api = api;
@@ -25,4 +27,23 @@ class ApiDefinition implements GoogleApi {
     public com.google.android.gms.common.api.Api.ApiOptions.HasOptions options() {
         return null;
     }
+
+    @Override
+    public void addTo(GoogleApiClient.Builder builder) {
+        builder.addApi(api);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ApiDefinition that = (ApiDefinition) o;
+        return api.equals(that.api);
+    }
+
+    @Override
+    public int hashCode() {
+        return api.hashCode();
+    }
 }
@@ -4,6 +4,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
 
 /**
  * Definition of a Google API that provides more options
@@ -28,4 +29,23 @@ class ApiWithOptions implements GoogleApi {
     public Api.ApiOptions.HasOptions options() {
         return options;
     }
+
+    @Override
+    public void addTo(GoogleApiClient.Builder builder) {
+        builder.addApi(api, options);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ApiWithOptions that = (ApiWithOptions) o;
+        return api.equals(that.api) && options.equals(that.options);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * api.hashCode() + options.hashCode();
+    }
 }
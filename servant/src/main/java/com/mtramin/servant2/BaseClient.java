@@ -17,58 +17,379 @@
 package com.mtramin.servant2;
 
 import android.content.Context;
-import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import com.google.android.gms.common.api.Api;
 import com.google.android.gms.common.api.GoogleApiClient;
 
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+import java.util.concurrent.TimeUnit;
+
 /**
  * Implements the basic setup of a {@link GoogleApiClient} with a given {@link Api}
+ * <p>
+ * If client pooling is enabled via {@link Servant#setClientPoolingEnabled(boolean)} the client
+ * is shared with all other concurrent clients for an equal {@link GoogleApi}.
+ * <p>
+ * The state of a connected client is written on the subscribing thread and read on the callback
+ * threads of its connection, so fields that change after it was built are volatile.
  */
-abstract class BaseClient {
+abstract class BaseClient implements Cloneable {
+
+    /**
+     * Thread that is treated as the main thread where no main looper is available, e.g. in JVM
+     * tests
+     */
+    @VisibleForTesting
+    static volatile Thread testMainThread;
 
     private final Context context;
-    GoogleApiClient googleApiClient;
+    private volatile ClientConnection connection;
+    private boolean pooled;
+    private volatile Disposable connectTimeout;
+    private long connectTimeoutNanos = -1;
+    private RetryPolicy retryPolicy;
+    private Handler callbackHandler;
+    private boolean blocking;
+    private Scheduler blockingScheduler;
+    private Priority priority = Priority.NORMAL;
+    private volatile RequestScheduler.Ticket ticket;
+    private volatile boolean connected;
+    private int servedConnection;
+    private volatile boolean released;
+    private volatile Api api;
+    private long connectStartedAt;
+    private ClientException rejection;
+    volatile GoogleApiClient googleApiClient;
 
     BaseClient(Context context) {
         this.context = context;
     }
 
     GoogleApiClient buildClient(GoogleApi googleApi) {
-        GoogleApiClient.Builder builder = new GoogleApiClient.Builder(context);
+        RetryPolicy retryPolicy = this.retryPolicy == null ? Servant.getRetryPolicy() : this.retryPolicy;
+        Handler handler = callbackHandler == null ? Servant.getCallbackHandler() : callbackHandler;
+
+        connected = false;
+        released = false;
+        api = googleApi.api();
+        CircuitBreaker circuitBreaker = Servant.getCircuitBreaker();
+        rejection = circuitBreaker == null ? null : circuitBreaker.check(context, api);
+        if (rejection != null) {
+            // Fails in connect() without building a client
+            connection = null;
+            googleApiClient = null;
+            return null;
+        }
 
-        if (googleApi.options() == null) {
-            builder.addApi(googleApi.api());
+        pooled = Servant.isClientPoolingEnabled();
+        if (pooled) {
+            connection = ClientPool.acquire(context, googleApi, retryPolicy, handler);
         } else {
-            builder.addApi(googleApi.api(), googleApi.options());
+            connection = new ClientConnection(context, googleApi, retryPolicy, handler);
         }
 
-        builder.addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
-            @Override
-            public void onConnected(@Nullable Bundle bundle) {
-                onClientConnected(googleApiClient);
+        googleApiClient = connection.client();
+        return googleApiClient;
+    }
+
+    void connect() {
+        connectStartedAt = System.nanoTime();
+        ServantTrace.record(ServantTrace.SUBSCRIBED, api, this, 0);
+        if (rejection != null) {
+            clientError(rejection);
+            return;
+        }
+
+        ClientConnection connection = this.connection;
+        if (connection == null) {
+            // Released before it connected
+            return;
+        }
+
+        long timeout = connectTimeoutNanos < 0 ? Servant.getConnectTimeoutNanos() : connectTimeoutNanos;
+        if (blocking) {
+            connectBlocking(connection, timeout);
+            return;
+        }
+        if (timeout > 0) {
+            // Delivered on the same thread as the connection callbacks
+            connectTimeout = connection.postDelayed(() -> clientError(
+                    new ClientTimeoutException("Client did not connect within "
+                            + TimeUnit.NANOSECONDS.toMillis(timeout) + "ms.")),
+                    timeout);
+            if (released) {
+                cancelConnectTimeout();
             }
+        }
+
+        connection.connect(this);
+    }
+
+    /**
+     * Connects the client on the calling thread with {@link GoogleApiClient#blockingConnect()}
+     * and notifies this client before returning.
+     *
+     * @param connection   connection of this client
+     * @param timeoutNanos maximum time to connect, {@code 0} to wait forever
+     */
+    private void connectBlocking(ClientConnection connection, long timeoutNanos) {
+        if (isMainThread()) {
+            clientError(mainThreadError());
+            return;
+        }
+
+        Throwable error = connection.blockingConnect(this, timeoutNanos);
+        if (error == null) {
+            clientConnected(googleApiClient, connection.connections());
+        } else {
+            clientError(error);
+        }
+    }
+
+    /**
+     * Runs the action after the delay on the thread the callbacks of this client are delivered on,
+     * also before the client was built.
+     *
+     * @param action     action to run
+     * @param delayNanos delay before the action runs
+     * @return disposable canceling the action
+     */
+    Disposable postDelayed(Runnable action, long delayNanos) {
+        ClientConnection connection = this.connection;
+        if (connection != null) {
+            return connection.postDelayed(action, delayNanos);
+        }
+        Handler handler = callbackHandler == null ? Servant.getCallbackHandler() : callbackHandler;
+        return ClientConnection.postDelayed(handler == null ? ClientConnection.mainHandler() : handler,
+                action, delayNanos);
+    }
+
+    private static IllegalStateException mainThreadError() {
+        return new IllegalStateException("Blocking clients must not connect on the main thread.");
+    }
+
+    static boolean isMainThread() {
+        Looper mainLooper = Looper.getMainLooper();
+        if (mainLooper == null) {
+            // The main looper is not available in JVM tests
+            return Thread.currentThread() == testMainThread;
+        }
+        return mainLooper == Looper.myLooper();
+    }
+
+    /**
+     * Copies the configuration of this client for a new subscription, so that subscriptions to
+     * the same definition neither share nor overwrite each others state. Must be called before
+     * the client is built.
+     *
+     * @param <C> type of this client
+     * @return a copy of this client that was not built yet
+     */
+    @SuppressWarnings("unchecked")
+    final <C extends BaseClient> C newSubscription() {
+        try {
+            return (C) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return the api of the built client
+     */
+    Api api() {
+        return api;
+    }
+
+    /**
+     * Overrides the default connect timeout of {@link Servant#setConnectTimeout(long, TimeUnit)}
+     *
+     * @param timeoutNanos maximum time to connect, {@code 0} to disable the timeout
+     */
+    void setConnectTimeout(long timeoutNanos) {
+        connectTimeoutNanos = timeoutNanos;
+    }
 
-            @Override
-            public void onConnectionSuspended(int i) {
-                onClientError(new ClientException("Client connection was suspended."));
+    /**
+     * Overrides the default retry policy of {@link Servant#setRetryPolicy(RetryPolicy)}. Shared
+     * clients use the policy of the client that created them.
+     *
+     * @param retryPolicy policy for failed connections
+     */
+    void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Overrides the default callback handler of {@link Servant#setCallbackHandler(Handler)}.
+     * Clients are only shared with subscribers that use the same handler.
+     *
+     * @param callbackHandler handler to deliver callbacks and results on
+     */
+    void setCallbackHandler(Handler callbackHandler) {
+        this.callbackHandler = callbackHandler;
+    }
+
+    /**
+     * Connects the client with {@link GoogleApiClient#blockingConnect()} and waits for results
+     * with {@link com.google.android.gms.common.api.PendingResult#await()} instead of callbacks.
+     *
+     * @param scheduler scheduler to subscribe on or {@code null} to block the subscribing thread
+     */
+    void setBlocking(@Nullable Scheduler scheduler) {
+        this.blocking = true;
+        this.blockingScheduler = scheduler;
+    }
+
+    /**
+     * @return whether this client connects and waits for results on the subscribing thread
+     */
+    boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * @return scheduler a blocking client subscribes on or {@code null} for the subscribing thread
+     */
+    @Nullable
+    Scheduler blockingScheduler() {
+        return blockingScheduler;
+    }
+
+    /**
+     * Builds and connects the client once the {@link RequestScheduler} admitted it. Blocking
+     * clients wait for their admission on the calling thread. Clients that were released with
+     * {@link #disconnect()} before they were admitted are never built.
+     *
+     * @param googleApi api to build the client for
+     */
+    void buildAndConnectWhenAdmitted(GoogleApi googleApi) {
+        if (blocking && isMainThread()) {
+            // Fails before waiting for admission on the main thread
+            clientError(mainThreadError());
+            return;
+        }
+
+        Runnable start = () -> {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                buildClient(googleApi);
+            }
+            connect();
+        };
+        RequestScheduler.Ticket ticket = RequestScheduler.ticket(googleApi.api(), priority,
+                blocking ? null : start);
+        synchronized (this) {
+            if (released) {
+                return;
             }
-        });
-        builder.addOnConnectionFailedListener(connectionResult -> onClientError(new ClientException(
-                connectionResult.getErrorMessage())));
+            // Assigned before it can be admitted, so that a release always finds it
+            this.ticket = ticket;
+        }
 
-        googleApiClient = builder.build();
-        return googleApiClient;
+        if (RequestScheduler.admit(ticket) || blocking && ticket.awaitAdmission()) {
+            start.run();
+        }
     }
 
-    void connect() {
-        googleApiClient.connect();
+    /**
+     * Sets the priority of this client while waiting for admission, defaults to
+     * {@link Priority#NORMAL}.
+     *
+     * @param priority priority of the client
+     */
+    void setPriority(Priority priority) {
+        this.priority = priority;
     }
 
     protected void disconnect() {
-        if (googleApiClient.isConnecting() || googleApiClient.isConnected()) {
-            googleApiClient.disconnect();
+        ClientConnection connection;
+        RequestScheduler.Ticket ticket;
+        synchronized (this) {
+            // Released together with taking the connection and ticket, so that a client that is
+            // admitted concurrently is not built anymore
+            released = true;
+            connection = this.connection;
+            this.connection = null;
+            ticket = this.ticket;
+            this.ticket = null;
+        }
+        cancelConnectTimeout();
+
+        if (connection != null) {
+            ServantTrace.record(ServantTrace.RELEASED, api, this, 0);
+            connection.remove(this);
+            if (pooled) {
+                ClientPool.release(connection);
+            } else {
+                connection.disconnect();
+            }
+        }
+
+        if (ticket != null) {
+            RequestScheduler.release(ticket);
+        }
+    }
+
+    /**
+     * @return whether this client was released with {@link #disconnect()} since it was built
+     */
+    boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * @param googleApiClient connected client
+     * @param connection      number of the connection, see {@link ClientConnection#connections()}.
+     *                        Connections that were served already are not served again.
+     */
+    final void clientConnected(GoogleApiClient googleApiClient, int connection) {
+        synchronized (this) {
+            if (connection <= servedConnection) {
+                // E.g. notified when it attached and again by the callback of the same connection
+                return;
+            }
+            servedConnection = connection;
+        }
+        cancelConnectTimeout();
+        if (connected && !notifyReconnects()) {
+            return;
+        }
+        if (!connected) {
+            Servant.getMetrics().onClientServed(api, System.nanoTime() - connectStartedAt);
+        }
+        connected = true;
+        ServantTrace.record(ServantTrace.SERVED, api, this, 0);
+        onClientConnected(googleApiClient);
+    }
+
+    /**
+     * @return whether {@link #onClientConnected(GoogleApiClient)} should be called again when the
+     * client reconnects after its connection was suspended
+     */
+    boolean notifyReconnects() {
+        return false;
+    }
+
+    final void clientError(Throwable throwable) {
+        cancelConnectTimeout();
+        ServantTrace.record(ServantTrace.ERROR, api, this, 0);
+        onClientError(throwable);
+    }
+
+    private void cancelConnectTimeout() {
+        Disposable connectTimeout = this.connectTimeout;
+        if (connectTimeout != null) {
+            this.connectTimeout = null;
+            connectTimeout.dispose();
         }
     }
 
@@ -0,0 +1,49 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+
+/**
+ * A single request of a batch that is executed with
+ * {@link Servant#batch(android.content.Context, com.google.android.gms.common.api.Api,
+ * org.reactivestreams.Publisher, int, boolean)}.
+ *
+ * @param <T> type of the unwrapped result
+ * @param <R> type of the result of the request
+ */
+public interface BatchRequest<T, R extends Result> {
+
+    /**
+     * Create the request you want to send with the {@link GoogleApiClient}.
+     * E.g. Awareness.SnapshotApi.getWeather(googleApiClient)
+     *
+     * @param googleApiClient connected client to use for the request
+     * @return the pending result returned by the request
+     */
+    PendingResult<? super R> createRequest(GoogleApiClient googleApiClient);
+
+    /**
+     * Unwrap the result of the request. The given result will already be checked that it was
+     * successful, otherwise a {@link ClientException} will be emitted.
+     *
+     * @param result result that was received
+     * @return result you want to emit
+     */
+    T unwrap(R result);
+}
@@ -0,0 +1,288 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+import com.google.android.gms.common.api.Api;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker failing clients fast while their api can not connect, e.g. as Google Play
+ * Services is missing, disabled or updating.
+ * <p>
+ * Every api starts {@link State#CLOSED closed}. Only failures due to unavailable services count:
+ * failures because Google Play Services is missing, disabled, invalid or updating open the circuit
+ * of an api immediately, failures because the api itself is unavailable once they reached the
+ * failure threshold. Other failures, e.g. resolvable ones such as
+ * {@link ConnectionResult#SIGN_IN_REQUIRED} or transient ones such as
+ * {@link ConnectionResult#NETWORK_ERROR}, never open the circuit. While the circuit is {@link State#OPEN open}, clients fail with a
+ * {@link ServiceUnavailableException} without being built. After the cooldown the circuit is
+ * {@link State#HALF_OPEN half-open} and lets a single client probe the connection, which closes
+ * the circuit if it connects or opens it again otherwise.
+ * <p>
+ * The availability of Google Play Services is also checked before building clients and cached
+ * for the cooldown.
+ *
+ * @see Servant#setCircuitBreaker(CircuitBreaker)
+ */
+public final class CircuitBreaker {
+
+    /**
+     * State of the circuit of an api
+     */
+    public enum State {
+        /**
+         * Clients are built and connected
+         */
+        CLOSED,
+
+        /**
+         * Clients fail without being built
+         */
+        OPEN,
+
+        /**
+         * A single client probes whether the api connects again
+         */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long cooldownNanos;
+    private final boolean checkAvailability;
+    private final ConcurrentMap<Api, Circuit> circuits = new ConcurrentHashMap<>();
+
+    private volatile int availability = ConnectionResult.SUCCESS;
+    private volatile long availabilityCheckedAt;
+    private volatile boolean availabilityChecked;
+
+    private CircuitBreaker(Builder builder) {
+        this.failureThreshold = builder.failureThreshold;
+        this.cooldownNanos = builder.cooldownNanos;
+        this.checkAvailability = builder.checkAvailability;
+    }
+
+    /**
+     * @param api api of the circuit
+     * @return the current state of the circuit of the api
+     */
+    public State getState(Api api) {
+        Circuit circuit = circuits.get(api);
+        return circuit == null ? State.CLOSED : circuit.state(System.nanoTime());
+    }
+
+    /**
+     * Checks whether a client for the api may be built. Allowing a client in a half-open circuit
+     * makes it the probe of the circuit.
+     *
+     * @param context context to check the availability of Google Play Services with
+     * @param api     api of the client
+     * @return {@code null} if the client may be built, otherwise the exception to fail it with
+     */
+    ClientException check(Context context, Api api) {
+        long now = System.nanoTime();
+        if (checkAvailability) {
+            int availability = availability(context, now);
+            if (availability != ConnectionResult.SUCCESS) {
+                return new ServiceUnavailableException(new ConnectionResult(availability),
+                        availabilityCheckedAt + cooldownNanos - now);
+            }
+        }
+
+        Circuit circuit = circuits.get(api);
+        return circuit == null ? null : circuit.allow(now);
+    }
+
+    /**
+     * Closes the circuit of an api after a client connected.
+     */
+    void onConnected(Api api) {
+        Circuit circuit = circuits.get(api);
+        if (circuit != null) {
+            circuit.onConnected();
+        }
+    }
+
+    /**
+     * Counts a failed connection towards opening the circuit of an api if the api or Google Play
+     * Services is unavailable.
+     */
+    void onConnectionFailed(Api api, int errorCode) {
+        long now = System.nanoTime();
+        if (!isUnavailable(errorCode)) {
+            Circuit circuit = circuits.get(api);
+            if (circuit != null) {
+                // The service answered, another client may probe it
+                circuit.onProbeEnded();
+            }
+            return;
+        }
+
+        boolean servicesUnavailable = errorCode != ConnectionResult.API_UNAVAILABLE;
+        if (servicesUnavailable) {
+            // Google Play Services itself is unavailable, skip the next availability check
+            availability = errorCode;
+            availabilityCheckedAt = now;
+            availabilityChecked = true;
+        }
+
+        Circuit circuit = circuits.get(api);
+        if (circuit == null) {
+            Circuit created = new Circuit();
+            circuit = circuits.putIfAbsent(api, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        circuit.onConnectionFailed(errorCode, servicesUnavailable, now);
+    }
+
+    private int availability(Context context, long now) {
+        if (!availabilityChecked || now - availabilityCheckedAt > cooldownNanos) {
+            availability = GoogleApiAvailability.getInstance().isGooglePlayServicesAvailable(context);
+            availabilityCheckedAt = now;
+            availabilityChecked = true;
+        }
+        return availability;
+    }
+
+    private static boolean isUnavailable(int errorCode) {
+        switch (errorCode) {
+            case ConnectionResult.SERVICE_MISSING:
+            case ConnectionResult.SERVICE_VERSION_UPDATE_REQUIRED:
+            case ConnectionResult.SERVICE_DISABLED:
+            case ConnectionResult.SERVICE_INVALID:
+            case ConnectionResult.SERVICE_UPDATING:
+            case ConnectionResult.SERVICE_MISSING_PERMISSION:
+            case ConnectionResult.API_UNAVAILABLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Circuit of a single api
+     */
+    private final class Circuit {
+
+        private int failures;
+        private int errorCode;
+        private long openedAt;
+        private boolean open;
+        private boolean probing;
+        private long probeStartedAt;
+
+        synchronized State state(long now) {
+            if (!open) {
+                return State.CLOSED;
+            }
+            return now - openedAt < cooldownNanos ? State.OPEN : State.HALF_OPEN;
+        }
+
+        synchronized ClientException allow(long now) {
+            if (!open) {
+                return null;
+            }
+
+            long retryAfter = openedAt + cooldownNanos - now;
+            // A probe that never reported back does not block the circuit forever
+            boolean probeLost = probing && now - probeStartedAt > cooldownNanos;
+            if (retryAfter <= 0 && (!probing || probeLost)) {
+                probing = true;
+                probeStartedAt = now;
+                return null;
+            }
+            return new ServiceUnavailableException(new ConnectionResult(errorCode),
+                    Math.max(retryAfter, 0));
+        }
+
+        synchronized void onConnected() {
+            failures = 0;
+            open = false;
+            probing = false;
+        }
+
+        synchronized void onProbeEnded() {
+            probing = false;
+        }
+
+        synchronized void onConnectionFailed(int errorCode, boolean servicesUnavailable, long now) {
+            this.errorCode = errorCode;
+            failures++;
+            if (probing || servicesUnavailable || failures >= failureThreshold) {
+                open = true;
+                openedAt = now;
+                probing = false;
+            }
+        }
+    }
+
+    /**
+     * Builder for a {@link CircuitBreaker}
+     */
+    public static final class Builder {
+
+        private int failureThreshold = 3;
+        private long cooldownNanos = TimeUnit.SECONDS.toNanos(30);
+        private boolean checkAvailability = true;
+
+        /**
+         * @param failureThreshold number of failed connections of an api because it is
+         *                         unavailable that open its circuit, defaults to 3
+         * @return this builder
+         */
+        public Builder failureThreshold(int failureThreshold) {
+            if (failureThreshold <= 0) {
+                throw new IllegalArgumentException("failureThreshold > 0 required but it was " + failureThreshold);
+            }
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        /**
+         * @param cooldown time an open circuit stays open before it is probed again and the
+         *                 availability of Google Play Services is cached for, defaults to 30
+         *                 seconds
+         * @param unit     unit of the cooldown
+         * @return this builder
+         */
+        public Builder cooldown(long cooldown, TimeUnit unit) {
+            this.cooldownNanos = unit.toNanos(cooldown);
+            return this;
+        }
+
+        /**
+         * @param checkAvailability whether to check the availability of Google Play Services
+         *                          before building clients, defaults to {@code true}
+         * @return this builder
+         */
+        public Builder checkAvailability(boolean checkAvailability) {
+            this.checkAvailability = checkAvailability;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,493 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mtramin.servant2;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns a {@link GoogleApiClient} for a {@link GoogleApi} and forwards its connection callbacks to
+ * every {@link BaseClient} that is currently waiting on it.
+ * <p>
+ * A connection is either owned by a single {@link BaseClient} or shared through the
+ * {@link ClientPool}.
+ * <p>
+ * Failures are retried according to the {@link RetryPolicy} of the connection: failed connection
+ * attempts reconnect the same client after a backoff. Suspensions wait for the automatic reconnect
+ * of the client and trigger a reconnect themselves if the client is not reconnecting after the
+ * backoff.
+ */
+final class ClientConnection implements GoogleApiClient.ConnectionCallbacks,
+        GoogleApiClient.OnConnectionFailedListener {
+
+    @VisibleForTesting
+    static volatile HandlerPoster handlerPoster = HandlerPoster.DEFAULT;
+
+    private final GoogleApi googleApi;
+    private final GoogleApiClient googleApiClient;
+    private final RetryPolicy retryPolicy;
+    private final Handler callbackHandler;
+    private final List<BaseClient> clients = new ArrayList<>();
+    private final List<BaseClient> blockingClients = new ArrayList<>();
+
+    private boolean connected;
+    private int connections;
+    private boolean disconnected;
+    private boolean paused;
+    private int retries;
+    private Disposable retry;
+    private int blockingConnects;
+    private volatile long connectStartedAt;
+
+    /**
+     * Number of {@link BaseClient}s holding this connection. Guarded by the {@link ClientPool}.
+     */
+    int references;
+
+    ClientConnection(Context context,
+                     GoogleApi googleApi,
+                     RetryPolicy retryPolicy,
+                     @Nullable Handler handler) {
+        this.googleApi = googleApi;
+        this.retryPolicy = retryPolicy;
+        this.callbackHandler = handler;
+
+        googleApiClient = Servant.getClientFactory().create(context, googleApi, handler, this, this);
+
+        ServantTrace.record(ServantTrace.CLIENT_CREATED, googleApi.api(), this, 0);
+        Servant.getMetrics().onClientCreated(googleApi.api());
+        ProcessLifecycle.register(this);
+    }
+
+    /**
+     * @return handler of the main thread, where clients deliver their callbacks by default, or
+     * {@code null} if there is no main Looper, e.g. in JVM tests
+     */
+    @Nullable
+    static Handler mainHandler() {
+        Looper mainLooper = Looper.getMainLooper();
+        return mainLooper == null ? null : new Handler(mainLooper);
+    }
+
+    /**
+     * @return handler the callbacks of this connection are delivered on, {@code null} for the
+     * main thread
+     */
+    @Nullable
+    Handler callbackHandler() {
+        return callbackHandler;
+    }
+
+    GoogleApi googleApi() {
+        return googleApi;
+    }
+
+    RetryPolicy retryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Runs the action after the delay on the thread the callbacks of this connection are
+     * delivered on, or on the computation scheduler if there is no such thread.
+     *
+     * @param action     action to run
+     * @param delayNanos delay before the action runs
+     * @return disposable canceling the action
+     */
+    Disposable postDelayed(Runnable action, long delayNanos) {
+        return postDelayed(callbackHandler != null ? callbackHandler : mainHandler(), action, delayNanos);
+    }
+
+    /**
+     * Runs the action after the delay on the given handler, or on the computation scheduler if
+     * there is no handler.
+     *
+     * @param handler    handler to run the action on
+     * @param action     action to run
+     * @param delayNanos delay before the action runs
+     * @return disposable canceling the action
+     */
+    static Disposable postDelayed(@Nullable Handler handler, Runnable action, long delayNanos) {
+        HandlerPoster poster = handlerPoster;
+        if (handler != null && poster.postDelayed(handler, action, TimeUnit.NANOSECONDS.toMillis(delayNanos))) {
+            return Disposables.fromAction(() -> poster.removeCallbacks(handler, action));
+        }
+        return Schedulers.computation().scheduleDirect(action, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return number of times the client connected, increasing with every reconnect
+     */
+    synchronized int connections() {
+        return connections;
+    }
+
+    GoogleApiClient client() {
+        return googleApiClient;
+    }
+
+    /**
+     * Connects the client for the given {@link BaseClient}. If the client is already connected
+     * the {@link BaseClient} will be notified immediately.
+     *
+     * @param client client waiting for the connection
+     */
+    void connect(BaseClient client) {
+        boolean alreadyConnected;
+        int connection;
+        synchronized (this) {
+            if (client.isReleased()) {
+                // Released while it was connecting
+                return;
+            }
+            // Added together with reading the state, so the client is either notified here or
+            // by the snapshot of onConnected, never by both
+            clients.add(client);
+            paused = false;
+            alreadyConnected = connected;
+            connection = connections;
+            if (!alreadyConnected && !googleApiClient.isConnecting()) {
+                connectStartedAt = System.nanoTime();
+            }
+        }
+
+        if (alreadyConnected) {
+            client.clientConnected(googleApiClient, connection);
+        } else {
+            // Ignored by the GoogleApiClient while it is already connecting
+            ServantTrace.record(ServantTrace.CONNECT, googleApi.api(), this, 0);
+            connectClient();
+        }
+    }
+
+    /**
+     * Connects the client on the calling thread and retries failures according to the
+     * {@link RetryPolicy} of this connection. While blocking, failures reported through the
+     * callbacks are not retried asynchronously.
+     *
+     * @param client       blocking client using this connection until it is removed
+     * @param timeoutNanos maximum time for each connection attempt, {@code 0} to wait forever
+     * @return {@code null} if the client connected, otherwise the reason it did not
+     */
+    ClientException blockingConnect(BaseClient client, long timeoutNanos) {
+        synchronized (this) {
+            blockingClients.add(client);
+            blockingConnects++;
+        }
+        try {
+            for (int retry = 1; ; retry++) {
+                synchronized (this) {
+                    if (disconnected) {
+                        return new ConnectionException(new ConnectionResult(ConnectionResult.CANCELED));
+                    }
+                    if (!googleApiClient.isConnecting()) {
+                        connectStartedAt = System.nanoTime();
+                    }
+                }
+                if (googleApiClient.isConnected()) {
+                    synchronized (this) {
+                        markConnected();
+                    }
+                    return null;
+                }
+
+                ServantTrace.record(ServantTrace.CONNECT, googleApi.api(), this, retry - 1);
+                ConnectionResult result = timeoutNanos > 0
+                        ? googleApiClient.blockingConnect(timeoutNanos, TimeUnit.NANOSECONDS)
+                        : googleApiClient.blockingConnect();
+                if (result.isSuccess()) {
+                    synchronized (this) {
+                        markConnected();
+                    }
+                    onBreakerConnected();
+                    return null;
+                }
+                onBreakerConnectionFailed(result.getErrorCode());
+
+                ClientException exception = result.getErrorCode() == ConnectionResult.TIMEOUT
+                        ? new ClientTimeoutException("Client did not connect within "
+                        + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms.")
+                        : new ConnectionException(result);
+                if (!retryPolicy.shouldRetry(exception, retry)) {
+                    dispatchError(exception);
+                    return exception;
+                }
+
+                ServantTrace.record(ServantTrace.RETRY_SCHEDULED, googleApi.api(), this, retry);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(retryPolicy.delayNanos(retry));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return exception;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                blockingConnects--;
+            }
+        }
+    }
+
+    /**
+     * Connects the client without waiting for it, e.g. to prewarm a shared connection.
+     */
+    void connect() {
+        synchronized (this) {
+            if (connected || disconnected || googleApiClient.isConnecting()) {
+                return;
+            }
+            connectStartedAt = System.nanoTime();
+        }
+
+        ServantTrace.record(ServantTrace.CONNECT, googleApi.api(), this, 0);
+        connectClient();
+    }
+
+    /**
+     * Disconnects the client while the process is in the background, without notifying the
+     * waiting {@link BaseClient}s. Only connections whose clients all handle reconnects can be
+     * paused. Connections with blocking clients are never paused and idle shared connections are
+     * left to expire.
+     *
+     * @return whether the connection was paused
+     */
+    boolean pause() {
+        synchronized (this) {
+            if (disconnected || paused || clients.isEmpty() || !blockingClients.isEmpty()) {
+                return false;
+            }
+            for (BaseClient client : clients) {
+                if (!client.notifyReconnects()) {
+                    return false;
+                }
+            }
+            paused = true;
+            connected = false;
+            if (retry != null) {
+                retry.dispose();
+                retry = null;
+            }
+        }
+
+        ServantTrace.record(ServantTrace.PAUSE, googleApi.api(), this, 0);
+        if (googleApiClient.isConnecting() || googleApiClient.isConnected()) {
+            googleApiClient.disconnect();
+        }
+        return true;
+    }
+
+    /**
+     * Reconnects a paused client, notifying all waiting {@link BaseClient}s once it connected.
+     */
+    void resume() {
+        synchronized (this) {
+            if (!paused) {
+                return;
+            }
+            paused = false;
+            if (disconnected) {
+                return;
+            }
+            connectStartedAt = System.nanoTime();
+        }
+
+        ServantTrace.record(ServantTrace.RESUME, googleApi.api(), this, 0);
+        connectClient();
+    }
+
+    synchronized void remove(BaseClient client) {
+        clients.remove(client);
+        blockingClients.remove(client);
+    }
+
+    void disconnect() {
+        synchronized (this) {
+            if (disconnected) {
+                return;
+            }
+            connected = false;
+            disconnected = true;
+            if (retry != null) {
+                retry.dispose();
+                retry = null;
+            }
+        }
+
+        ProcessLifecycle.unregister(this);
+        ServantTrace.record(ServantTrace.DISCONNECT, googleApi.api(), this, 0);
+        if (googleApiClient.isConnecting() || googleApiClient.isConnected()) {
+            googleApiClient.disconnect();
+        }
+        Servant.getMetrics().onClientDisconnected(googleApi.api());
+    }
+
+    @Override
+    public void onConnected(@Nullable Bundle bundle) {
+        ServantTrace.record(ServantTrace.CONNECTED, googleApi.api(), this, 0);
+        Servant.getMetrics().onConnected(googleApi.api(), System.nanoTime() - connectStartedAt);
+        onBreakerConnected();
+
+        List<BaseClient> clients;
+        int connection;
+        synchronized (this) {
+            clients = snapshot(true);
+            connection = connections;
+        }
+        for (BaseClient client : clients) {
+            client.clientConnected(googleApiClient, connection);
+        }
+    }
+
+    @Override
+    public void onConnectionSuspended(int cause) {
+        ServantTrace.record(ServantTrace.CONNECTION_SUSPENDED, googleApi.api(), this, cause);
+        retry(new ConnectionSuspendedException(cause));
+    }
+
+    @Override
+    public void onConnectionFailed(@NonNull ConnectionResult connectionResult) {
+        ServantTrace.record(ServantTrace.CONNECTION_FAILED, googleApi.api(), this,
+                connectionResult.getErrorCode());
+        onBreakerConnectionFailed(connectionResult.getErrorCode());
+        retry(new ConnectionException(connectionResult));
+    }
+
+    private void retry(ClientException exception) {
+        Servant.getMetrics().onConnectionFailed(googleApi.api(), exception);
+
+        synchronized (this) {
+            if (blockingConnects > 0) {
+                // Retried by the blocking connect
+                connected = false;
+                return;
+            }
+        }
+
+        long delay = nextRetryDelay(exception);
+        if (delay < 0) {
+            dispatchError(exception);
+            return;
+        }
+
+        synchronized (this) {
+            if (!disconnected) {
+                ServantTrace.record(ServantTrace.RETRY_SCHEDULED, googleApi.api(), this, retries);
+                retry = Schedulers.computation().scheduleDirect(this::reconnect, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void reconnect() {
+        synchronized (this) {
+            retry = null;
+            if (disconnected || connected || googleApiClient.isConnecting()) {
+                return;
+            }
+            connectStartedAt = System.nanoTime();
+        }
+
+        ServantTrace.record(ServantTrace.CONNECT, googleApi.api(), this, retries);
+        connectClient();
+    }
+
+    /**
+     * Connects the client and disconnects it again if this connection was disconnected while it
+     * started connecting.
+     */
+    private void connectClient() {
+        googleApiClient.connect();
+
+        boolean disconnected;
+        synchronized (this) {
+            disconnected = this.disconnected;
+        }
+        if (disconnected) {
+            googleApiClient.disconnect();
+        }
+    }
+
+    /**
+     * @param exception failure of the connection
+     * @return delay before the connection is retried or {@code -1} if it must not be retried
+     */
+    private synchronized long nextRetryDelay(ClientException exception) {
+        connected = false;
+        connectStartedAt = System.nanoTime();
+        if (disconnected || !retryPolicy.shouldRetry(exception, retries + 1)) {
+            retries = 0;
+            return -1;
+        }
+        return retryPolicy.delayNanos(++retries);
+    }
+
+    private void onBreakerConnected() {
+        CircuitBreaker circuitBreaker = Servant.getCircuitBreaker();
+        if (circuitBreaker != null) {
+            circuitBreaker.onConnected(googleApi.api());
+        }
+    }
+
+    private void onBreakerConnectionFailed(int errorCode) {
+        CircuitBreaker circuitBreaker = Servant.getCircuitBreaker();
+        if (circuitBreaker != null) {
+            circuitBreaker.onConnectionFailed(googleApi.api(), errorCode);
+        }
+    }
+
+    private void dispatchError(Throwable throwable) {
+        for (BaseClient client : snapshot(false)) {
+            client.clientError(throwable);
+        }
+    }
+
+    private synchronized List<BaseClient> snapshot(boolean connected) {
+        if (connected) {
+            markConnected();
+            retries = 0;
+        } else {
+            this.connected = false;
+        }
+        return new ArrayList<>(clients);
+    }
+
+    /**
+     * Counts a new connection unless the client was connected already, e.g. by a blocking
+     * connect before its callback arrived. Guarded by this.
+     */
+    private void markConnected() {
+        if (!connected) {
+            connected = true;
+            connections++;
+        }
+    }
+}
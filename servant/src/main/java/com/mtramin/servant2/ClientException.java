@@ -19,9 +19,22 @@ package com.mtramin.servant2;
 /**
  * Exception that is thrown upon errors with the {@link com.google.android.gms.common.api.GoogleApiClient}
  * connection.
+ *
+ * @see ConnectionException
+ * @see ConnectionSuspendedException
+ * @see StatusException
+ * @see ClientTimeoutException
  */
 public class ClientException extends Throwable {
     public ClientException(String message) {
         super(message);
     }
+
+    /**
+     * @return {@code true} if the failure is transient and repeating the operation might succeed,
+     * {@code false} if it will fail again
+     */
+    public boolean isRetryable() {
+        return false;
+    }
 }
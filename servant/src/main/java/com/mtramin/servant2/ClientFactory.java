@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+
+/**
+ * Creates the {@link GoogleApiClient}s for all clients served by {@link Servant}. Replace it with
+ * {@link Servant#setClientFactory(ClientFactory)}, e.g. to serve fake clients in tests.
+ */
+public interface ClientFactory {
+
+    /**
+     * Factory building clients with a {@link GoogleApiClient.Builder}
+     */
+    ClientFactory DEFAULT = new ClientFactory() {
+        @Override
+        public GoogleApiClient create(Context context,
+                                      GoogleApi googleApi,
+                                      @Nullable Handler handler,
+                                      GoogleApiClient.ConnectionCallbacks connectionCallbacks,
+                                      GoogleApiClient.OnConnectionFailedListener connectionFailedListener) {
+            GoogleApiClient.Builder builder = new GoogleApiClient.Builder(context);
+            googleApi.addTo(builder);
+            if (handler != null) {
+                builder.setHandler(handler);
+            }
+            builder.addConnectionCallbacks(connectionCallbacks);
+            builder.addOnConnectionFailedListener(connectionFailedListener);
+            return builder.build();
+        }
+    };
+
+    /**
+     * @param context                  context to use for the client
+     * @param googleApi                apis to add to the client
+     * @param handler                  handler to deliver the callbacks and results of the client on,
+     *                                 {@code null} for the main thread
+     * @param connectionCallbacks      callbacks to register on the client
+     * @param connectionFailedListener listener to register on the client
+     * @return the not yet connected client
+     */
+    GoogleApiClient create(Context context,
+                           GoogleApi googleApi,
+                           @Nullable Handler handler,
+                           GoogleApiClient.ConnectionCallbacks connectionCallbacks,
+                           GoogleApiClient.OnConnectionFailedListener connectionFailedListener);
+}
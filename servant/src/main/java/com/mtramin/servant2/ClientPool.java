@@ -0,0 +1,248 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+import android.os.Handler;
+import android.support.annotation.Nullable;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide pool of reference counted {@link ClientConnection}s keyed by their {@link GoogleApi},
+ * {@link RetryPolicy} and callback {@link Handler}.
+ * <p>
+ * All concurrent subscribers for an equal {@link GoogleApi} share a single connected client, as
+ * long as they retry failures with the same policy and expect callbacks on the same handler.
+ * Subscribers with another policy get their own client, so that e.g. resilient observables keep
+ * retrying while plain subscribers give up. Once
+ * the last subscriber released it, the client is kept idle according to the
+ * {@link KeepAlivePolicy} and disconnected afterwards.
+ */
+final class ClientPool {
+
+    /**
+     * Weight of the latest observation in the average gap between subscriptions
+     */
+    private static final double GAP_WEIGHT = 0.25;
+
+    private static final Map<Key, ClientConnection> connections = new HashMap<>();
+    /**
+     * Scheduled disconnects of idle connections, longest idle first
+     */
+    private static final Map<ClientConnection, Disposable> idle = new LinkedHashMap<>();
+    private static final Map<GoogleApi, Long> idleSince = new HashMap<>();
+    private static final Map<GoogleApi, Long> averageGaps = new HashMap<>();
+
+    private ClientPool() {
+        // no instances
+    }
+
+    /**
+     * Acquires the shared connection for the given {@link GoogleApi}, creating it if needed.
+     * Every call has to be balanced with a call to {@link #release(ClientConnection)}.
+     *
+     * @param context     context to use for the client, the application context will be used
+     * @param googleApi   api the client is built for
+     * @param retryPolicy retry policy of the connection
+     * @param handler     callback handler of the connection, {@code null} for the main thread
+     * @return the shared connection
+     */
+    static synchronized ClientConnection acquire(Context context,
+                                                 GoogleApi googleApi,
+                                                 RetryPolicy retryPolicy,
+                                                 @Nullable Handler handler) {
+        recordGap(googleApi);
+
+        Key key = new Key(googleApi, retryPolicy, handler);
+        ClientConnection connection = connections.get(key);
+        if (connection == null) {
+            connection = new ClientConnection(context.getApplicationContext(), googleApi, retryPolicy,
+                    handler);
+            connections.put(key, connection);
+        }
+
+        Disposable disconnect = idle.remove(connection);
+        if (disconnect != null) {
+            disconnect.dispose();
+        }
+        connection.references++;
+        return connection;
+    }
+
+    /**
+     * Acquires and connects the shared connection for the given {@link GoogleApi} ahead of its
+     * first subscriber.
+     *
+     * @param context   context to use for the client, the application context will be used
+     * @param googleApi api the client is built for
+     * @return the shared connection, which has to be released with {@link #release(ClientConnection)}
+     */
+    static ClientConnection prewarm(Context context, GoogleApi googleApi) {
+        ClientConnection connection = acquire(context, googleApi, Servant.getRetryPolicy(),
+                Servant.getCallbackHandler());
+        connection.connect();
+        return connection;
+    }
+
+    /**
+     * Releases a connection that was acquired with
+     * {@link #acquire(Context, GoogleApi, RetryPolicy, Handler)}. Once it is not referenced
+     * anymore, it is kept idle according to the {@link KeepAlivePolicy} or disconnected.
+     *
+     * @param connection connection to release
+     */
+    static void release(ClientConnection connection) {
+        ClientConnection evicted = null;
+        synchronized (ClientPool.class) {
+            if (--connection.references > 0) {
+                return;
+            }
+
+            GoogleApi googleApi = connection.googleApi();
+            idleSince.put(googleApi, System.nanoTime());
+
+            KeepAlivePolicy policy = Servant.getKeepAlivePolicy();
+            Long averageGap = averageGaps.get(googleApi);
+            long linger = policy.lingerNanos(averageGap == null ? -1 : averageGap);
+            if (linger > 0 && policy.maxIdleClients() > 0) {
+                idle.put(connection, Schedulers.computation().scheduleDirect(
+                        () -> expire(connection), linger, TimeUnit.NANOSECONDS));
+                if (idle.size() > policy.maxIdleClients()) {
+                    evicted = evictLongestIdle();
+                }
+            } else {
+                connections.remove(Key.of(connection));
+                evicted = connection;
+            }
+        }
+
+        if (evicted != null) {
+            evicted.disconnect();
+        }
+    }
+
+    /**
+     * Disconnects all idle connections, e.g. once the process went to the background.
+     */
+    static void evictIdle() {
+        List<ClientConnection> evicted;
+        synchronized (ClientPool.class) {
+            evicted = new ArrayList<>(idle.keySet());
+            for (Map.Entry<ClientConnection, Disposable> entry : idle.entrySet()) {
+                entry.getValue().dispose();
+                connections.remove(Key.of(entry.getKey()));
+            }
+            idle.clear();
+        }
+
+        for (ClientConnection connection : evicted) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Disconnects a connection once it was idle for its linger time.
+     */
+    private static void expire(ClientConnection connection) {
+        synchronized (ClientPool.class) {
+            if (connection.references > 0 || idle.remove(connection) == null) {
+                return;
+            }
+            connections.remove(Key.of(connection));
+        }
+        connection.disconnect();
+    }
+
+    /**
+     * Must be called while holding the lock of the pool.
+     *
+     * @return the removed connection that was idle the longest
+     */
+    private static ClientConnection evictLongestIdle() {
+        Iterator<Map.Entry<ClientConnection, Disposable>> iterator = idle.entrySet().iterator();
+        Map.Entry<ClientConnection, Disposable> eldest = iterator.next();
+        iterator.remove();
+        eldest.getValue().dispose();
+
+        ClientConnection connection = eldest.getKey();
+        connections.remove(Key.of(connection));
+        return connection;
+    }
+
+    /**
+     * Updates the average time between the api becoming idle and its next subscription. Must be
+     * called while holding the lock of the pool.
+     */
+    private static void recordGap(GoogleApi googleApi) {
+        Long since = idleSince.remove(googleApi);
+        if (since == null) {
+            return;
+        }
+
+        long gap = System.nanoTime() - since;
+        Long average = averageGaps.get(googleApi);
+        averageGaps.put(googleApi, average == null ? gap : (long) (average + GAP_WEIGHT * (gap - average)));
+    }
+
+    /**
+     * Identifies connections that can be shared
+     */
+    private static final class Key {
+        private final GoogleApi googleApi;
+        private final RetryPolicy retryPolicy;
+        private final Handler handler;
+
+        Key(GoogleApi googleApi, RetryPolicy retryPolicy, @Nullable Handler handler) {
+            this.googleApi = googleApi;
+            this.retryPolicy = retryPolicy;
+            this.handler = handler;
+        }
+
+        static Key of(ClientConnection connection) {
+            return new Key(connection.googleApi(), connection.retryPolicy(), connection.callbackHandler());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return googleApi.equals(other.googleApi)
+                    && retryPolicy == other.retryPolicy
+                    && handler == other.handler;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * googleApi.hashCode() + System.identityHashCode(retryPolicy))
+                    + System.identityHashCode(handler);
+        }
+    }
+}
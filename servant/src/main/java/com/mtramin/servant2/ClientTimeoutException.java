@@ -0,0 +1,31 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+/**
+ * Exception that is thrown when a {@link com.google.android.gms.common.api.GoogleApiClient} did not
+ * connect or a request did not deliver its result within the configured timeout.
+ */
+public class ClientTimeoutException extends ClientException {
+    public ClientTimeoutException(String message) {
+        super(message);
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mtramin.servant2;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Definition of multiple Google APIs that will be served by one single {@link GoogleApiClient}.
+ * <p>
+ * Use the {@link Builder} to create an instance:
+ * <pre>{@code
+ * CompositeApi apis = new CompositeApi.Builder()
+ *         .add(LocationServices.API)
+ *         .add(Auth.GOOGLE_SIGN_IN_API, googleSignInOptions)
+ *         .build();
+ * }</pre>
+ * <p>
+ * The first API that was added represents the composite: concurrency limits, rate limiters, the
+ * circuit breaker and metrics only apply to the first API, not to the others. Add the API whose
+ * limits should apply first.
+ */
+public final class CompositeApi implements GoogleApi {
+
+    private final List<GoogleApi> apis;
+
+    private CompositeApi(List<GoogleApi> apis) {
+        this.apis = Collections.unmodifiableList(apis);
+    }
+
+    /**
+     * @return the first API that was added, which limits and measures clients of the composite
+     */
+    @Override
+    @NonNull
+    public Api api() {
+        return apis.get(0).api();
+    }
+
+    /**
+     * @return the options of the first API that was added, might be {@code null}
+     */
+    @Override
+    @Nullable
+    public Api.ApiOptions.HasOptions options() {
+        return apis.get(0).options();
+    }
+
+    @Override
+    public void addTo(GoogleApiClient.Builder builder) {
+        for (GoogleApi api : apis) {
+            api.addTo(builder);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CompositeApi that = (CompositeApi) o;
+        return apis.equals(that.apis);
+    }
+
+    @Override
+    public int hashCode() {
+        return apis.hashCode();
+    }
+
+    /**
+     * Builder for a {@link CompositeApi}
+     */
+    public static final class Builder {
+
+        private final List<GoogleApi> apis = new ArrayList<>();
+
+        /**
+         * Add an API that does not need any options
+         *
+         * @param api api to add
+         * @return this builder
+         */
+        public Builder add(Api api) {
+            apis.add(new ApiDefinition(api));
+            return this;
+        }
+
+        /**
+         * Add an API with options
+         *
+         * @param api     api to add
+         * @param options options for the api
+         * @return this builder
+         */
+        public Builder add(Api api, Api.ApiOptions.HasOptions options) {
+            apis.add(new ApiWithOptions(api, options));
+            return this;
+        }
+
+        /**
+         * @return the composite of all added APIs
+         * @throws IllegalStateException if no API was added
+         */
+        public CompositeApi build() {
+            if (apis.isEmpty()) {
+                throw new IllegalStateException("At least one Api has to be added.");
+            }
+            return new CompositeApi(new ArrayList<>(apis));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.ConnectionResult;
+
+/**
+ * Exception that is thrown when a {@link com.google.android.gms.common.api.GoogleApiClient} failed
+ * to connect. Provides the full {@link ConnectionResult}.
+ */
+public class ConnectionException extends ClientException {
+
+    private final ConnectionResult connectionResult;
+    private final boolean retryable;
+
+    public ConnectionException(ConnectionResult connectionResult) {
+        super("Client connection failed with error code " + connectionResult.getErrorCode() + ". "
+                + connectionResult.getErrorMessage());
+        this.connectionResult = connectionResult;
+        this.retryable = isRetryable(connectionResult.getErrorCode());
+    }
+
+    /**
+     * @return the result of the failed connection attempt
+     */
+    public ConnectionResult getConnectionResult() {
+        return connectionResult;
+    }
+
+    /**
+     * @return the error code of the {@link ConnectionResult}
+     */
+    public int getErrorCode() {
+        return connectionResult.getErrorCode();
+    }
+
+    /**
+     * @return whether the failure can be resolved by starting the resolution of the
+     * {@link ConnectionResult}
+     */
+    public boolean hasResolution() {
+        return connectionResult.hasResolution();
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @param errorCode error code of a {@link ConnectionResult}
+     * @return whether connecting again might succeed without any user interaction
+     */
+    static boolean isRetryable(int errorCode) {
+        switch (errorCode) {
+            case ConnectionResult.NETWORK_ERROR:
+            case ConnectionResult.INTERNAL_ERROR:
+            case ConnectionResult.CANCELED:
+            case ConnectionResult.TIMEOUT:
+            case ConnectionResult.INTERRUPTED:
+            case ConnectionResult.SERVICE_UPDATING:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
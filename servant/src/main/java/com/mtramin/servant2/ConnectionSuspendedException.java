@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+/**
+ * Exception that is thrown when the connection of a
+ * {@link com.google.android.gms.common.api.GoogleApiClient} was suspended.
+ */
+public class ConnectionSuspendedException extends ClientException {
+
+    private final int suspensionCause;
+
+    public ConnectionSuspendedException(int suspensionCause) {
+        super("Client connection was suspended. Cause: " + suspensionCause);
+        this.suspensionCause = suspensionCause;
+    }
+
+    /**
+     * @return the cause of the suspension, either
+     * {@link com.google.android.gms.common.api.GoogleApiClient.ConnectionCallbacks#CAUSE_SERVICE_DISCONNECTED}
+     * or {@link com.google.android.gms.common.api.GoogleApiClient.ConnectionCallbacks#CAUSE_NETWORK_LOST}
+     */
+    public int getSuspensionCause() {
+        return suspensionCause;
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return true;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.data.DataBuffer;
+
+/**
+ * A request whose result is backed by a {@link DataBuffer}, e.g. places or leaderboard scores.
+ * The entries of the buffer are streamed with
+ * {@link Servant#dataBuffer(android.content.Context, com.google.android.gms.common.api.Api,
+ * DataBufferRequest)}.
+ *
+ * @param <T> type of the entries of the buffer
+ * @param <R> type of the result of the request
+ */
+public interface DataBufferRequest<T, R extends Result> {
+
+    /**
+     * Create the request you want to send with the {@link GoogleApiClient}.
+     * E.g. Places.GeoDataApi.getPlaceById(googleApiClient, placeId)
+     *
+     * @param googleApiClient connected client to use for the request
+     * @return the pending result returned by the request
+     */
+    PendingResult<? super R> createRequest(GoogleApiClient googleApiClient);
+
+    /**
+     * Returns the buffer of the result. The given result will already be checked that it was
+     * successful, otherwise a {@link ClientException} will be emitted. The buffer is released by
+     * Servant.
+     *
+     * @param result result that was received
+     * @return buffer holding the entries of the result, usually the result itself
+     */
+    DataBuffer<T> buffer(R result);
+}
@@ -4,11 +4,15 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
 
 /**
  * Definition of a Google API
+ * <p>
+ * Implementations have to implement {@link Object#equals(Object)} and {@link Object#hashCode()}
+ * as they are used as keys for shared clients.
  */
-interface GoogleApi {
+public interface GoogleApi {
 
     /**
      * @return requested API
@@ -21,4 +25,11 @@ interface GoogleApi {
      */
     @Nullable
     Api.ApiOptions.HasOptions options();
+
+    /**
+     * Adds all APIs of this definition to the given builder.
+     *
+     * @param builder builder of the client
+     */
+    void addTo(GoogleApiClient.Builder builder);
 }
@@ -26,7 +26,8 @@ import io.reactivex.functions.Consumer;
  * Implementation serving a {@link GoogleApiClient} that is usable with Actions.
  * <p>
  * Will provide the created {@link GoogleApiClient} via the action
- * {@link #onClientConnected(GoogleApiClient)} and will disconnect the client immediately afterwards.
+ * {@link #onClientConnected(GoogleApiClient)} and will disconnect the client immediately afterwards
+ * or after an error.
  */
 class GoogleApiClientActions extends BaseClient {
 
@@ -57,13 +58,18 @@ class GoogleApiClientActions extends BaseClient {
         try {
             onClientConnected.accept(googleApiClient);
         } catch (Exception e) {
-            onClientError(e);
+            notifyError(e);
         }
         disconnect();
     }
 
     @Override
     void onClientError(Throwable throwable) {
+        notifyError(throwable);
+        disconnect();
+    }
+
+    private void notifyError(Throwable throwable) {
         try {
             onError.accept(throwable);
         } catch (Exception e) {
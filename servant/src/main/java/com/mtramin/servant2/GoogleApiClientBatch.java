@@ -0,0 +1,125 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+
+import org.reactivestreams.Publisher;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.functions.Function;
+
+/**
+ * Executes a stream of {@link BatchRequest}s over one single connected {@link GoogleApiClient}
+ * and serves their unwrapped results as a {@link Flowable}.
+ * <p>
+ * At most {@code maxConcurrency} {@link com.google.android.gms.common.api.PendingResult}s will be
+ * in flight at the same time. The client will be disconnected once all requests completed, any
+ * request failed or the returned {@link Flowable} is disposed of.
+ */
+class GoogleApiClientBatch extends BaseClient implements SingleOnSubscribe<GoogleApiClient> {
+
+    private final GoogleApi googleApi;
+    private volatile SingleEmitter<GoogleApiClient> emitter;
+
+    private GoogleApiClientBatch(Context context, GoogleApi googleApi) {
+        super(context);
+        this.googleApi = googleApi;
+    }
+
+    static <T> Flowable<T> create(Context context,
+                                  GoogleApi googleApi,
+                                  Publisher<? extends BatchRequest<T, ?>> requests,
+                                  int maxConcurrency,
+                                  boolean ordered) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency > 0 required but it was " + maxConcurrency);
+        }
+
+        return withClient(context, googleApi,
+                client -> execute(googleApi.api(), client, requests, maxConcurrency, ordered));
+    }
+
+    /**
+     * Connects a client for the subscriber of the returned Flowable and disconnects it once the
+     * Flowable terminated or was disposed of.
+     *
+     * @param context   context to use for the client
+     * @param googleApi api to use for the client
+     * @param mapper    creates the emitted values with the connected client
+     * @param <T>       type of the emitted values
+     * @return Flowable emitting the values created with the client
+     */
+    static <T> Flowable<T> withClient(Context context,
+                                      GoogleApi googleApi,
+                                      Function<GoogleApiClient, Publisher<T>> mapper) {
+        return Flowable.using(
+                () -> new GoogleApiClientBatch(context, googleApi),
+                batch -> values(Single.create(batch), mapper),
+                GoogleApiClientBatch::disconnect);
+    }
+
+    /**
+     * Maps the value of the Single to a Publisher while passing on downstream requests as they
+     * are. Unlike {@link Single#flatMapPublisher(Function)} this does not prefetch values from
+     * the Publisher.
+     */
+    static <T, R> Flowable<R> values(Single<T> single, Function<? super T, ? extends Publisher<? extends R>> mapper) {
+        return single.toFlowable().concatMap(mapper, 1);
+    }
+
+    private static <T> Flowable<T> execute(Api api,
+                                           GoogleApiClient googleApiClient,
+                                           Publisher<? extends BatchRequest<T, ?>> requests,
+                                           int maxConcurrency,
+                                           boolean ordered) {
+        Function<BatchRequest<T, ?>, Flowable<T>> request =
+                batchRequest -> PendingResultSingle.create(api, googleApiClient, batchRequest).toFlowable();
+
+        Flowable<BatchRequest<T, ?>> batchRequests = Flowable.fromPublisher(requests);
+        if (ordered) {
+            return batchRequests.concatMapEager(request, maxConcurrency, 1);
+        }
+        return batchRequests.flatMap(request, maxConcurrency);
+    }
+
+    @Override
+    public void subscribe(SingleEmitter<GoogleApiClient> emitter) throws Exception {
+        this.emitter = emitter;
+
+        buildClient(googleApi);
+        connect();
+    }
+
+    @Override
+    void onClientConnected(GoogleApiClient googleApiClient) {
+        emitter.onSuccess(googleApiClient);
+    }
+
+    @Override
+    void onClientError(Throwable throwable) {
+        // Once connected, failures are reported through the status of the individual requests
+        if (!emitter.isDisposed()) {
+            emitter.onError(throwable);
+        }
+    }
+}
@@ -22,20 +22,32 @@ import com.google.android.gms.common.api.Api;
 import com.google.android.gms.common.api.Api.ApiOptions.HasOptions;
 import com.google.android.gms.common.api.GoogleApiClient;
 
+import io.reactivex.Completable;
 import io.reactivex.CompletableEmitter;
 import io.reactivex.CompletableOnSubscribe;
+import io.reactivex.Scheduler;
 
 /**
  * Provides an interface that serves a {@link GoogleApiClient} as a {@link io.reactivex.Completable}.
  * <p>
  * Will disconnect the Client once the Completable is disposed of. This is also the case once
  * the Completable calls {@link CompletableEmitter#onComplete()}.
+ * <p>
+ * On worker threads, the client can connect without callbacks with {@link #blocking()}.
+ * <p>
+ * The Completable can be subscribed to many times, also concurrently, e.g. with
+ * {@link Completable#retry()}. Every subscription runs on its own shallow copy of this instance,
+ * so {@link #onCompleted()} and {@link #onError(Throwable)} always emit to the subscription whose
+ * client connected. Fields of subclasses that change while a subscription runs are not copied
+ * back to this instance. As the copy is shallow, objects referenced by fields of subclasses, e.g.
+ * collections, are shared by all subscriptions and must be safe to use from concurrent
+ * subscriptions.
  */
 public abstract class GoogleApiClientCompletable extends BaseClient
         implements CompletableOnSubscribe {
 
     private final GoogleApi googleApi;
-    private CompletableEmitter completableEmitter;
+    private volatile CompletableEmitter completableEmitter;
 
     protected GoogleApiClientCompletable(Context context, Api api) {
         super(context);
@@ -47,14 +59,73 @@ public abstract class GoogleApiClientCompletable extends BaseClient
         this.googleApi = new ApiWithOptions(api, options);
     }
 
+    protected GoogleApiClientCompletable(Context context, CompositeApi apis) {
+        super(context);
+        this.googleApi = apis;
+    }
+
+    /**
+     * Sets the priority of this Completable while it waits for admission because the concurrency limit
+     * of its api is reached.
+     *
+     * @param priority priority of this Completable, defaults to {@link Priority#NORMAL}
+     * @return this Completable
+     * @see Servant#setConcurrencyLimit(Api, int)
+     */
+    public GoogleApiClientCompletable priority(Priority priority) {
+        setPriority(priority);
+        return this;
+    }
+
+    /**
+     * Overrides the default retry policy of {@link Servant#setRetryPolicy(RetryPolicy)} for
+     * failed connections of this Completable.
+     *
+     * @param retryPolicy policy for failed connections
+     * @return this Completable
+     */
+    public GoogleApiClientCompletable retryPolicy(RetryPolicy retryPolicy) {
+        setRetryPolicy(retryPolicy);
+        return this;
+    }
+
+    /**
+     * Connects the client with {@link GoogleApiClient#blockingConnect()} on the subscribing thread
+     * instead of waiting for callbacks, e.g. in background jobs. Emits an
+     * {@link IllegalStateException} if subscribed to on the main thread.
+     *
+     * @return this Completable
+     */
+    public GoogleApiClientCompletable blocking() {
+        setBlocking(null);
+        return this;
+    }
+
+    /**
+     * Connects the client with {@link GoogleApiClient#blockingConnect()} on the given scheduler
+     * instead of waiting for callbacks.
+     *
+     * @param scheduler scheduler to subscribe on, must not run on the main thread
+     * @return this Completable
+     */
+    public GoogleApiClientCompletable blocking(Scheduler scheduler) {
+        setBlocking(scheduler);
+        return this;
+    }
+
+    Completable toCompletable() {
+        Completable completable = Completable.create(this);
+        Scheduler scheduler = blockingScheduler();
+        return scheduler == null ? completable : completable.subscribeOn(scheduler);
+    }
+
     @Override
     public void subscribe(CompletableEmitter emitter) throws Exception {
-        this.completableEmitter = emitter;
-
-        buildClient(googleApi);
-        connect();
+        GoogleApiClientCompletable subscription = newSubscription();
+        subscription.completableEmitter = emitter;
 
-        emitter.setCancellable(this::disconnect);
+        emitter.setCancellable(subscription::disconnect);
+        subscription.buildAndConnectWhenAdmitted(googleApi);
     }
 
     /**
@@ -68,7 +139,9 @@ public abstract class GoogleApiClientCompletable extends BaseClient
      * Call when the Completable GoogleApiClient should complete.
      */
     protected void onCompleted() {
-        completableEmitter.onComplete();
+        if (!completableEmitter.isDisposed()) {
+            completableEmitter.onComplete();
+        }
     }
 
     /**
@@ -77,7 +150,9 @@ public abstract class GoogleApiClientCompletable extends BaseClient
      * @param throwable throwable to emit in onError.
      */
     protected void onError(Throwable throwable) {
-        completableEmitter.onError(throwable);
+        if (!completableEmitter.isDisposed()) {
+            completableEmitter.onError(throwable);
+        }
     }
 
     @Override
@@ -87,6 +162,6 @@ public abstract class GoogleApiClientCompletable extends BaseClient
 
     @Override
     void onClientError(Throwable throwable) {
-        completableEmitter.onError(throwable);
+        onError(throwable);
     }
 }
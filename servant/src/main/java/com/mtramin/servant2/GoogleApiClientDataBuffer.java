@@ -0,0 +1,104 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.data.DataBuffer;
+import com.google.android.gms.common.data.Freezable;
+
+import io.reactivex.Flowable;
+
+/**
+ * Executes a {@link DataBufferRequest} and streams the entries of its {@link DataBuffer} as a
+ * {@link Flowable} without copying the buffer.
+ * <p>
+ * Entries are only read from the buffer as they are requested downstream. {@link Freezable}
+ * entries are frozen before they are emitted, so they stay valid after the buffer was released.
+ * The buffer is released and the client disconnected once all entries were emitted, the request
+ * failed or the Flowable was disposed of.
+ */
+final class GoogleApiClientDataBuffer {
+
+    private GoogleApiClientDataBuffer() {
+        // no instances
+    }
+
+    static <T, R extends Result> Flowable<T> create(Context context,
+                                                    GoogleApi googleApi,
+                                                    DataBufferRequest<T, R> request) {
+        return GoogleApiClientBatch.withClient(context, googleApi,
+                client -> execute(googleApi.api(), client, request));
+    }
+
+    private static <T, R extends Result> Flowable<T> execute(Api api,
+                                                             GoogleApiClient googleApiClient,
+                                                             DataBufferRequest<T, R> request) {
+        return GoogleApiClientBatch.values(PendingResultSingle.create(api, googleApiClient, new BatchRequest<R, R>() {
+            @Override
+            public PendingResult<? super R> createRequest(GoogleApiClient googleApiClient) {
+                return request.createRequest(googleApiClient);
+            }
+
+            @Override
+            public R unwrap(R result) {
+                return result;
+            }
+        }), result -> Flowable.using(
+                () -> buffer(request, result),
+                GoogleApiClientDataBuffer::entries,
+                DataBuffer::release));
+    }
+
+    private static <T, R extends Result> DataBuffer<T> buffer(DataBufferRequest<T, R> request, R result) {
+        try {
+            return request.buffer(result);
+        } catch (RuntimeException e) {
+            PendingResults.release(result);
+            throw e;
+        }
+    }
+
+    private static <T> Flowable<T> entries(DataBuffer<T> buffer) {
+        if (buffer.getCount() == 0) {
+            return Flowable.empty();
+        }
+        return Flowable.generate(() -> new int[1], (position, emitter) -> {
+            int index = position[0];
+            int count = buffer.getCount();
+            if (index < count) {
+                position[0] = index + 1;
+                emitter.onNext(freeze(buffer.get(index)));
+            }
+            // Completes with the last entry, so the buffer is released without another request
+            if (index + 1 >= count) {
+                emitter.onComplete();
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T freeze(T entry) {
+        if (entry instanceof Freezable) {
+            return ((Freezable<T>) entry).freeze();
+        }
+        return entry;
+    }
+}
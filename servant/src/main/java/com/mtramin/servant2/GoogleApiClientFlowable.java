@@ -0,0 +1,134 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.FlowableOnSubscribe;
+
+/**
+ * Provides an interface that serves continuous results of a listener based API of a
+ * {@link GoogleApiClient} as a {@link io.reactivex.Flowable}, e.g. location updates.
+ * <p>
+ * Register your listener in {@link #onFlowableClientConnected(GoogleApiClient)} and emit values
+ * with {@link #onNext(Object)}. The listener has to be unregistered in
+ * {@link #onFlowableClientDisconnecting(GoogleApiClient)}, which is called before the client is
+ * disconnected once the Flowable is disposed of or terminated.
+ * <p>
+ * Use {@link Servant#flowable(GoogleApiClientFlowable, BackpressureStrategy)} or
+ * {@link Servant#flowable(GoogleApiClientFlowable, int, io.reactivex.BackpressureOverflowStrategy)}
+ * to choose how values are handled that are emitted faster than they are consumed.
+ * <p>
+ * The Flowable can be subscribed to many times, also concurrently, e.g. with
+ * {@link io.reactivex.Flowable#retry()}. Every subscription runs on its own shallow copy of this
+ * instance, so {@link #onNext(Object)} always emits to the subscription whose client connected
+ * and each subscription unregisters its own listener. Fields of subclasses that change while a
+ * subscription runs are not copied back to this instance. As the copy is shallow, objects
+ * referenced by fields of subclasses, e.g. collections, are shared by all subscriptions and must
+ * be safe to use from concurrent subscriptions.
+ */
+public abstract class GoogleApiClientFlowable<T> extends BaseClient implements FlowableOnSubscribe<T> {
+
+    private final GoogleApi googleApi;
+    private volatile FlowableEmitter<T> emitter;
+    private volatile boolean listening;
+
+    protected GoogleApiClientFlowable(Context context, Api api) {
+        super(context);
+        this.googleApi = new ApiDefinition(api);
+    }
+
+    protected GoogleApiClientFlowable(Context context, Api api, Api.ApiOptions.HasOptions options) {
+        super(context);
+        this.googleApi = new ApiWithOptions(api, options);
+    }
+
+    protected GoogleApiClientFlowable(Context context, CompositeApi apis) {
+        super(context);
+        this.googleApi = apis;
+    }
+
+    @Override
+    public void subscribe(FlowableEmitter<T> emitter) throws Exception {
+        GoogleApiClientFlowable<T> subscription = newSubscription();
+        subscription.emitter = emitter;
+
+        subscription.buildClient(googleApi);
+        subscription.connect();
+
+        emitter.setCancellable(subscription::disconnect);
+    }
+
+    /**
+     * Callback when the client is connected. Register your listener here and emit its values
+     * with {@link #onNext(Object)}.
+     *
+     * @param googleApiClient the connected client
+     */
+    protected abstract void onFlowableClientConnected(GoogleApiClient googleApiClient);
+
+    /**
+     * Callback before the client is disconnected. Unregister your listener here.
+     *
+     * @param googleApiClient the still connected client
+     */
+    protected abstract void onFlowableClientDisconnecting(GoogleApiClient googleApiClient);
+
+    protected void onNext(T value) {
+        if (!emitter.isCancelled()) {
+            emitter.onNext(value);
+        }
+    }
+
+    protected void onCompleted() {
+        if (!emitter.isCancelled()) {
+            emitter.onComplete();
+        }
+    }
+
+    protected void onError(Throwable throwable) {
+        if (!emitter.isCancelled()) {
+            emitter.onError(throwable);
+        }
+    }
+
+    @Override
+    protected void disconnect() {
+        if (listening) {
+            listening = false;
+            if (googleApiClient.isConnected()) {
+                onFlowableClientDisconnecting(googleApiClient);
+            }
+        }
+        super.disconnect();
+    }
+
+    @Override
+    void onClientConnected(GoogleApiClient googleApiClient) {
+        listening = true;
+        onFlowableClientConnected(googleApiClient);
+    }
+
+    @Override
+    void onClientError(Throwable throwable) {
+        onError(throwable);
+    }
+}
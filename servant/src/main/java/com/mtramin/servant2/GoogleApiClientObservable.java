@@ -30,12 +30,16 @@ import io.reactivex.ObservableOnSubscribe;
  * {@link Emitter#onNext(Object)} when it is ready to be used.
  * <p>
  * The client will be disconnected once the returned {@link Observable} is disposed of.
+ * <p>
+ * A resilient Observable keeps its subscription alive when the connection is suspended or fails.
+ * It reconnects according to its {@link RetryPolicy} and emits the client again once it is
+ * reconnected. It only errors once the retries of the policy are exhausted.
  */
 class GoogleApiClientObservable extends BaseClient
         implements ObservableOnSubscribe<GoogleApiClient> {
 
     private final GoogleApi googleApi;
-    private ObservableEmitter<GoogleApiClient> emitter;
+    private volatile ObservableEmitter<GoogleApiClient> emitter;
 
     private GoogleApiClientObservable(Context context, GoogleApi googleApi) {
         super(context);
@@ -46,14 +50,29 @@ class GoogleApiClientObservable extends BaseClient
         return Observable.create(new GoogleApiClientObservable(context, googleApi));
     }
 
+    static Observable<GoogleApiClient> createResilient(Context context,
+                                                       GoogleApi googleApi,
+                                                       RetryPolicy retryPolicy) {
+        GoogleApiClientObservable observable = new GoogleApiClientObservable(context, googleApi);
+        observable.setRetryPolicy(retryPolicy);
+        return Observable.create(observable);
+    }
+
     @Override
     public void subscribe(ObservableEmitter<GoogleApiClient> emitter) throws Exception {
-        this.emitter = emitter;
+        // Every subscription, e.g. of a retry, connects its own copy
+        GoogleApiClientObservable subscription = newSubscription();
+        subscription.emitter = emitter;
 
-        buildClient(googleApi);
-        connect();
+        subscription.buildClient(googleApi);
+        subscription.connect();
 
-        emitter.setCancellable(this::disconnect);
+        emitter.setCancellable(subscription::disconnect);
+    }
+
+    @Override
+    boolean notifyReconnects() {
+        return true;
     }
 
     @Override
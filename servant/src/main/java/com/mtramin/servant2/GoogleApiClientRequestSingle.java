@@ -17,22 +17,63 @@
 package com.mtramin.servant2;
 
 import android.content.Context;
+import android.os.Handler;
 
 import com.google.android.gms.common.api.Api;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.Result;
 
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.Disposable;
+
+import java.util.concurrent.TimeUnit;
+
 /**
  * Provides interface that can be extended to use a {@link GoogleApiClient} as a {@link io.reactivex.Single} that
  * automatically performs the given request.
  * <p>
  * Will disconnect the client once it has emitted it's value in {@link io.reactivex.SingleEmitter#onSuccess(Object)}
  * or once the recipient disconnects from the Single.
+ * <p>
+ * Results can be cached by providing a {@link #requestKey()} and a cache via
+ * {@link #cacheIn(ResultCache, long, TimeUnit)}. A cached result is emitted without building a
+ * client.
+ * <p>
+ * Results can also be persisted in a {@link ResultStore} via
+ * {@link #storeIn(ResultStore, ResultSerializer)}, to serve them at the next start of the app with
+ * {@link Servant#staleWhileRevalidate(GoogleApiClientRequestSingle, boolean)}.
+ * <p>
+ * Concurrent subscriptions to requests with equal request keys can be coalesced into a single
+ * request with {@link #coalesceInFlight()}.
+ * <p>
+ * The request is canceled if the Single is disposed of before its result arrived. Deadlines for
+ * connecting the client and for the result to arrive can be set with
+ * {@link #timeout(long, long, TimeUnit)}.
+ * <p>
+ * Requests are paced by the {@link RateLimiter} of their api, if one was set with
+ * {@link Servant#setRateLimiter(Api, RateLimiter)}.
+ * <p>
+ * Results are unwrapped on the thread delivering them, unless a scheduler was set with
+ * {@link #unwrapOn(Scheduler)}.
  */
 public abstract class GoogleApiClientRequestSingle<T, R extends Result>
         extends GoogleApiClientSingle<T> {
 
+    private ResultCache cache;
+    private long cacheTtlNanos;
+    private ResultStore store;
+    private ResultSerializer<T> serializer;
+    private boolean coalesceInFlight;
+    private long requestTimeoutNanos = -1;
+    private volatile PendingResult<? super R> pendingResult;
+    private Scheduler unwrapScheduler;
+    private volatile Disposable rateLimitDelay;
+
     protected GoogleApiClientRequestSingle(Context context, Api api) {
         super(context.getApplicationContext(), api);
     }
@@ -43,18 +84,358 @@ public abstract class GoogleApiClientRequestSingle<T, R extends Result>
         super(context.getApplicationContext(), api, options);
     }
 
+    protected GoogleApiClientRequestSingle(Context context, CompositeApi apis) {
+        super(context.getApplicationContext(), apis);
+    }
+
+    /**
+     * Cache successful results of this request.
+     *
+     * @param cache cache to store the results in
+     * @param ttl   time to live of a cached result
+     * @param unit  unit of the time to live
+     * @return this request
+     */
+    public GoogleApiClientRequestSingle<T, R> cacheIn(ResultCache cache, long ttl, TimeUnit unit) {
+        this.cache = cache;
+        this.cacheTtlNanos = unit.toNanos(ttl);
+        return this;
+    }
+
+    /**
+     * Persist successful results of this request, so they can be served before a client
+     * connected with {@link Servant#staleWhileRevalidate(GoogleApiClientRequestSingle, boolean)}.
+     * Requires a {@link #requestKey()}.
+     *
+     * @param store      store to persist the results in
+     * @param serializer serializer to write and read the results with
+     * @return this request
+     */
+    public GoogleApiClientRequestSingle<T, R> storeIn(ResultStore store, ResultSerializer<T> serializer) {
+        this.store = store;
+        this.serializer = serializer;
+        return this;
+    }
+
+    /**
+     * Coalesce concurrent subscriptions: while a request with an equal {@link #requestKey()} is in
+     * flight, new subscribers attach to it instead of executing their own request. Only takes
+     * effect when served via {@link Servant#single(GoogleApiClientSingle)}.
+     *
+     * @return this request
+     */
+    public GoogleApiClientRequestSingle<T, R> coalesceInFlight() {
+        this.coalesceInFlight = true;
+        return this;
+    }
+
+    /**
+     * Overrides the default timeouts of {@link Servant#setConnectTimeout(long, TimeUnit)} and
+     * {@link Servant#setRequestTimeout(long, TimeUnit)}. Once a timeout passes, a
+     * {@link ClientTimeoutException} is emitted.
+     *
+     * @param connectTimeout maximum time to connect the client, {@code 0} to wait forever
+     * @param requestTimeout maximum time for the result to arrive, {@code 0} to wait forever
+     * @param unit           unit of the timeouts
+     * @return this request
+     */
+    public GoogleApiClientRequestSingle<T, R> timeout(long connectTimeout,
+                                                      long requestTimeout,
+                                                      TimeUnit unit) {
+        setConnectTimeout(unit.toNanos(connectTimeout));
+        this.requestTimeoutNanos = unit.toNanos(requestTimeout);
+        return this;
+    }
+
+    /**
+     * Overrides the default retry policy of {@link Servant#setRetryPolicy(RetryPolicy)} for
+     * failed connections of this request.
+     *
+     * @param retryPolicy policy for failed connections
+     * @return this request
+     */
+    @Override
+    public GoogleApiClientRequestSingle<T, R> retryPolicy(RetryPolicy retryPolicy) {
+        super.retryPolicy(retryPolicy);
+        return this;
+    }
+
+    /**
+     * Overrides the default callback handler of {@link Servant#setCallbackHandler(Handler)}, so
+     * the connection callbacks, the result and {@link #unwrap(Result)} of this request run on the
+     * given handler.
+     *
+     * @param handler handler to deliver callbacks and results on
+     * @return this request
+     */
+    public GoogleApiClientRequestSingle<T, R> callbackHandler(Handler handler) {
+        setCallbackHandler(handler);
+        return this;
+    }
+
+    /**
+     * Runs {@link #unwrap(Result)} on the given scheduler instead of the thread delivering the
+     * result, e.g. to parse large results off the main thread. If the Single is disposed of before
+     * the result was unwrapped, the result is released if it is
+     * {@link com.google.android.gms.common.api.Releasable}.
+     *
+     * @param scheduler scheduler to unwrap the result on
+     * @return this request
+     */
+    public GoogleApiClientRequestSingle<T, R> unwrapOn(Scheduler scheduler) {
+        this.unwrapScheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Sets the priority of this request while it waits for admission because the concurrency
+     * limit of its api is reached.
+     *
+     * @param priority priority of this request, defaults to {@link Priority#NORMAL}
+     * @return this request
+     * @see Servant#setConcurrencyLimit(Api, int)
+     */
+    @Override
+    public GoogleApiClientRequestSingle<T, R> priority(Priority priority) {
+        super.priority(priority);
+        return this;
+    }
+
+    /**
+     * Connects the client with {@link GoogleApiClient#blockingConnect()} and waits for the result
+     * with {@link PendingResult#await()} on the subscribing thread instead of waiting for
+     * callbacks, e.g. in background jobs. Emits an {@link IllegalStateException} if subscribed to
+     * on the main thread.
+     *
+     * @return this request
+     */
+    @Override
+    public GoogleApiClientRequestSingle<T, R> blocking() {
+        super.blocking();
+        return this;
+    }
+
+    /**
+     * Connects the client with {@link GoogleApiClient#blockingConnect()} and waits for the result
+     * with {@link PendingResult#await()} on the given scheduler instead of waiting for callbacks.
+     *
+     * @param scheduler scheduler to subscribe on, must not run on the main thread
+     * @return this request
+     */
+    @Override
+    public GoogleApiClientRequestSingle<T, R> blocking(Scheduler scheduler) {
+        super.blocking(scheduler);
+        return this;
+    }
+
+    @Override
+    Single<T> toSingle() {
+        if (!coalesceInFlight) {
+            return super.toSingle();
+        }
+
+        Single<T> request = super.toSingle();
+        return Single.defer(() -> {
+            Object key = requestKey();
+            return key == null
+                    ? request
+                    : InFlightRequests.coalesce(getClass(), googleApi(), key, request);
+        });
+    }
+
+    /**
+     * Emits the stored result of this request while the request itself is sent, and the result of
+     * the request once it arrived. A stored result is not emitted anymore once the request
+     * completed.
+     *
+     * @param emitStale whether to emit the stored result, otherwise it is only emitted in place of
+     *                  the result of a failed request
+     * @return Observable emitting the stored and the requested result
+     */
+    Observable<T> toStaleWhileRevalidate(boolean emitStale) {
+        Observable<T> fresh = toSingle().toObservable();
+        Observable<T> stale = Maybe.defer(this::stored).toObservable();
+        if (emitStale) {
+            return fresh.publish(shared -> Observable.merge(stale.takeUntil(shared), shared));
+        }
+        return fresh.onErrorResumeNext(
+                (Throwable error) -> stale.switchIfEmpty(Observable.error(error)));
+    }
+
+    private Maybe<T> stored() {
+        Object key = store == null ? null : requestKey();
+        return key == null ? Maybe.empty() : store.read(key, serializer);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void subscribe(SingleEmitter<T> emitter) throws Exception {
+        Object key = cache == null ? null : requestKey();
+        if (key != null) {
+            T cached = (T) cache.get(key);
+            if (cached != null) {
+                emitter.onSuccess(cached);
+                return;
+            }
+        }
+
+        super.subscribe(emitter);
+    }
+
+    /**
+     * Takes a permit of the {@link RateLimiter} of the api before the client is built and
+     * admitted, so that requests waiting for their permit hold neither a client nor an admission.
+     */
+    @Override
+    void buildAndConnectWhenAdmitted(GoogleApi googleApi) {
+        Api api = googleApi.api();
+        RateLimiter rateLimiter = Servant.getRateLimiter(api);
+        if (rateLimiter == null || isBlocking() && isMainThread()) {
+            // Blocking clients on the main thread fail without taking a permit
+            super.buildAndConnectWhenAdmitted(googleApi);
+            return;
+        }
+
+        long delay = rateLimiter.acquire();
+        if (delay == 0) {
+            super.buildAndConnectWhenAdmitted(googleApi);
+        } else if (delay < 0) {
+            onError(new RateLimitedException("Rate limit of " + api.getName() + " exceeded.", -delay));
+        } else if (isBlocking()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                onError(e);
+                return;
+            }
+            super.buildAndConnectWhenAdmitted(googleApi);
+        } else {
+            // Never built if it was released while waiting for its permit
+            rateLimitDelay = postDelayed(() -> {
+                rateLimitDelay = null;
+                super.buildAndConnectWhenAdmitted(googleApi);
+            }, delay);
+        }
+    }
+
     @Override
     protected void onSingleClientConnected(GoogleApiClient googleApiClient) {
-        createRequest(googleApiClient)
-                .setResultCallback(result -> {
-                    if (!result.getStatus().isSuccess()) {
-                        onError(new ClientException("Error in client request. " + result.getStatus()
-                                .getStatusMessage()));
-                        return;
-                    }
-
-                    onSuccess(unwrap((R) result));
-                });
+        sendRequest(googleApiClient);
+    }
+
+    private void sendRequest(GoogleApiClient googleApiClient) {
+        if (isDisposed()) {
+            // Disposed of while it connected
+            return;
+        }
+        long timeout = requestTimeoutNanos < 0 ? Servant.getRequestTimeoutNanos() : requestTimeoutNanos;
+
+        Api api = api();
+        long requestStartedAt = System.nanoTime();
+
+        ServantTrace.record(ServantTrace.REQUEST_SENT, api, this, 0);
+        PendingResult<? super R> pendingResult = createRequest(googleApiClient);
+        this.pendingResult = pendingResult;
+        if (isDisposed()) {
+            // Disposed of while the request was created, disconnect() may have missed it
+            this.pendingResult = null;
+            ServantTrace.record(ServantTrace.REQUEST_CANCELED, api, this, 0);
+            pendingResult.cancel();
+            return;
+        }
+        if (isBlocking()) {
+            Result result = timeout > 0
+                    ? pendingResult.await(timeout, TimeUnit.NANOSECONDS)
+                    : pendingResult.await();
+            onResult(api, requestStartedAt, result);
+        } else {
+            PendingResults.setResultCallback(pendingResult,
+                    result -> onResult(api, requestStartedAt, result), timeout);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onResult(Api api, long requestStartedAt, Result result) {
+        pendingResult = null;
+        ServantTrace.record(ServantTrace.REQUEST_COMPLETED, api, this,
+                result.getStatus().getStatusCode());
+
+        boolean success = result.getStatus().isSuccess();
+        Servant.getMetrics().onRequestCompleted(api, System.nanoTime() - requestStartedAt, success);
+        if (!success) {
+            onError(PendingResults.error(result.getStatus()));
+            return;
+        }
+
+        Scheduler scheduler = unwrapScheduler;
+        if (scheduler == null) {
+            complete((R) result);
+        } else {
+            scheduler.scheduleDirect(() -> {
+                if (isDisposed()) {
+                    PendingResults.release(result);
+                } else {
+                    complete((R) result);
+                }
+            });
+        }
+    }
+
+    private void complete(R result) {
+        T value;
+        try {
+            value = unwrap(result);
+        } catch (RuntimeException e) {
+            PendingResults.release(result);
+            onError(e);
+            return;
+        }
+        cache(value);
+        store(value);
+        onSuccess(value);
+    }
+
+    @Override
+    protected void disconnect() {
+        Disposable rateLimitDelay = this.rateLimitDelay;
+        if (rateLimitDelay != null) {
+            this.rateLimitDelay = null;
+            rateLimitDelay.dispose();
+        }
+
+        PendingResult<? super R> pendingResult = this.pendingResult;
+        if (pendingResult != null) {
+            this.pendingResult = null;
+            ServantTrace.record(ServantTrace.REQUEST_CANCELED, api(), this, 0);
+            pendingResult.cancel();
+        }
+        super.disconnect();
+    }
+
+    private void cache(T value) {
+        Object key = cache == null ? null : requestKey();
+        if (key != null) {
+            cache.put(key, value, cacheTtlNanos);
+        }
+    }
+
+    private void store(T value) {
+        Object key = store == null ? null : requestKey();
+        if (key != null) {
+            store.write(key, value, serializer);
+        }
+    }
+
+    /**
+     * Key that identifies this request. Requests with equal keys are expected to deliver equal
+     * results.
+     *
+     * @return key of this request or {@code null} if the results of this request must not be
+     * cached or coalesced
+     */
+    protected Object requestKey() {
+        return null;
     }
 
     /**
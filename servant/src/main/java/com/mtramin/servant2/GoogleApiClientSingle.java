@@ -21,6 +21,8 @@ import android.content.Context;
 import com.google.android.gms.common.api.Api;
 import com.google.android.gms.common.api.GoogleApiClient;
 
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
 import io.reactivex.SingleOnSubscribe;
 
@@ -29,11 +31,21 @@ import io.reactivex.SingleOnSubscribe;
  * <p>
  * Will disconnect the Client once the Single is disposed from. This is also the case if the
  * Single emits anything in {@link SingleEmitter#onSuccess(Object)}.
+ * <p>
+ * On worker threads, the client can connect without callbacks with {@link #blocking()}.
+ * <p>
+ * The Single can be subscribed to many times, also concurrently, e.g. with
+ * {@link Single#retry()}. Every subscription runs on its own shallow copy of this instance, so
+ * {@link #onSuccess(Object)} and {@link #onError(Throwable)} always emit to the subscription
+ * whose client connected. Fields of subclasses that change while a subscription runs are not
+ * copied back to this instance. As the copy is shallow, objects referenced by fields of
+ * subclasses, e.g. collections, are shared by all subscriptions and must be safe to use from
+ * concurrent subscriptions.
  */
 public abstract class GoogleApiClientSingle<T> extends BaseClient implements SingleOnSubscribe<T> {
 
     private final GoogleApi googleApi;
-    private SingleEmitter<? super T> singleEmitter;
+    private volatile SingleEmitter<? super T> singleEmitter;
 
     protected GoogleApiClientSingle(Context context, Api api) {
         super(context);
@@ -45,14 +57,80 @@ public abstract class GoogleApiClientSingle<T> extends BaseClient implements Sin
         this.googleApi = new ApiWithOptions(api, options);
     }
 
+    protected GoogleApiClientSingle(Context context, CompositeApi apis) {
+        super(context);
+        this.googleApi = apis;
+    }
+
+    /**
+     * Sets the priority of this Single while it waits for admission because the concurrency limit
+     * of its api is reached.
+     *
+     * @param priority priority of this Single, defaults to {@link Priority#NORMAL}
+     * @return this Single
+     * @see Servant#setConcurrencyLimit(Api, int)
+     */
+    public GoogleApiClientSingle<T> priority(Priority priority) {
+        setPriority(priority);
+        return this;
+    }
+
+    /**
+     * Overrides the default retry policy of {@link Servant#setRetryPolicy(RetryPolicy)} for
+     * failed connections of this Single.
+     *
+     * @param retryPolicy policy for failed connections
+     * @return this Single
+     */
+    public GoogleApiClientSingle<T> retryPolicy(RetryPolicy retryPolicy) {
+        setRetryPolicy(retryPolicy);
+        return this;
+    }
+
+    /**
+     * Connects the client with {@link GoogleApiClient#blockingConnect()} on the subscribing thread
+     * instead of waiting for callbacks, e.g. in background jobs. Emits an
+     * {@link IllegalStateException} if subscribed to on the main thread.
+     *
+     * @return this Single
+     */
+    public GoogleApiClientSingle<T> blocking() {
+        setBlocking(null);
+        return this;
+    }
+
+    /**
+     * Connects the client with {@link GoogleApiClient#blockingConnect()} on the given scheduler
+     * instead of waiting for callbacks.
+     *
+     * @param scheduler scheduler to subscribe on, must not run on the main thread
+     * @return this Single
+     */
+    public GoogleApiClientSingle<T> blocking(Scheduler scheduler) {
+        setBlocking(scheduler);
+        return this;
+    }
+
+    /**
+     * @return the apis the client of this Single is built for
+     */
+    GoogleApi googleApi() {
+        return googleApi;
+    }
+
+    Single<T> toSingle() {
+        Single<T> single = Single.create(this);
+        Scheduler scheduler = blockingScheduler();
+        return scheduler == null ? single : single.subscribeOn(scheduler);
+    }
+
     @Override
     public void subscribe(SingleEmitter<T> emitter) throws Exception {
-        this.singleEmitter = emitter;
-
-        buildClient(googleApi);
-        connect();
+        GoogleApiClientSingle<T> subscription = newSubscription();
+        subscription.singleEmitter = emitter;
 
-        emitter.setCancellable(this::disconnect);
+        emitter.setCancellable(subscription::disconnect);
+        subscription.buildAndConnectWhenAdmitted(googleApi);
     }
 
     /**
@@ -75,6 +153,13 @@ public abstract class GoogleApiClientSingle<T> extends BaseClient implements Sin
         }
     }
 
+    /**
+     * @return whether the subscriber disposed of the Single or it already emitted
+     */
+    boolean isDisposed() {
+        return singleEmitter.isDisposed();
+    }
+
     @Override
     void onClientConnected(GoogleApiClient googleApiClient) {
         onSingleClientConnected(googleApiClient);
@@ -82,6 +167,6 @@ public abstract class GoogleApiClientSingle<T> extends BaseClient implements Sin
 
     @Override
     void onClientError(Throwable throwable) {
-        singleEmitter.onError(throwable);
+        onError(throwable);
     }
 }
@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.os.Handler;
+
+/**
+ * Posts delayed actions, e.g. connect timeouts, to the {@link Handler} callbacks are delivered on.
+ * Can be replaced in JVM tests, where handlers do not run any messages.
+ */
+interface HandlerPoster {
+
+    /**
+     * Posts to the handler itself
+     */
+    HandlerPoster DEFAULT = new HandlerPoster() {
+        @Override
+        public boolean postDelayed(Handler handler, Runnable action, long delayMillis) {
+            return handler.postDelayed(action, delayMillis);
+        }
+
+        @Override
+        public void removeCallbacks(Handler handler, Runnable action) {
+            handler.removeCallbacks(action);
+        }
+    };
+
+    /**
+     * @param handler     handler to run the action on
+     * @param action      action to run
+     * @param delayMillis delay before the action runs
+     * @return whether the action was posted
+     */
+    boolean postDelayed(Handler handler, Runnable action, long delayMillis);
+
+    /**
+     * @param handler handler the action was posted to
+     * @param action  action that must not run anymore
+     */
+    void removeCallbacks(Handler handler, Runnable action);
+}
@@ -0,0 +1,112 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.reactivex.Single;
+
+/**
+ * Coalesces concurrent subscriptions to requests with equal request keys, so that only one of
+ * them is executed and all subscribers receive its result or error. Only requests of the same
+ * class and {@link GoogleApi} are coalesced, so unrelated requests with colliding keys never
+ * receive each others results.
+ * <p>
+ * The shared request is only disposed of once all of its subscribers were disposed of.
+ */
+final class InFlightRequests {
+
+    private static final Map<Key, InFlight<?>> requests = new HashMap<>();
+
+    private InFlightRequests() {
+        // no instances
+    }
+
+    /**
+     * @param requestClass class of the request
+     * @param googleApi    api of the request
+     * @param requestKey   key of the request
+     * @param request      request to execute if no equal request is in flight
+     * @param <T>          type of the result
+     * @return the request that is in flight for the given class, api and key
+     */
+    @SuppressWarnings("unchecked")
+    static synchronized <T> Single<T> coalesce(Class<?> requestClass,
+                                               GoogleApi googleApi,
+                                               Object requestKey,
+                                               Single<T> request) {
+        Key key = new Key(requestClass, googleApi, requestKey);
+        InFlight<T> inFlight = (InFlight<T>) requests.get(key);
+        if (inFlight == null) {
+            inFlight = new InFlight<>();
+            InFlight<T> finished = inFlight;
+            inFlight.single = request.toObservable()
+                    .doFinally(() -> remove(key, finished))
+                    .share()
+                    .singleOrError();
+            requests.put(key, inFlight);
+        }
+        return inFlight.single;
+    }
+
+    private static synchronized void remove(Key key, InFlight<?> inFlight) {
+        if (requests.get(key) == inFlight) {
+            requests.remove(key);
+        }
+    }
+
+    /**
+     * Identifies equal requests
+     */
+    private static final class Key {
+        private final Class<?> requestClass;
+        private final GoogleApi googleApi;
+        private final Object requestKey;
+
+        Key(Class<?> requestClass, GoogleApi googleApi, Object requestKey) {
+            this.requestClass = requestClass;
+            this.googleApi = googleApi;
+            this.requestKey = requestKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return requestClass == other.requestClass
+                    && googleApi.equals(other.googleApi)
+                    && requestKey.equals(other.requestKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = requestClass.hashCode();
+            result = 31 * result + googleApi.hashCode();
+            result = 31 * result + requestKey.hashCode();
+            return result;
+        }
+    }
+
+    private static final class InFlight<T> {
+        Single<T> single;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy for keeping shared clients connected after their last subscriber was disposed of, so
+ * subscriptions shortly after each other do not reconnect the client.
+ * <p>
+ * Idle clients linger for a fixed grace period or for a period adapted to the observed gaps
+ * between subscriptions for the same api. Once more than {@code maxIdleClients} clients are idle,
+ * the longest idle one is disconnected.
+ *
+ * @see Servant#setKeepAlivePolicy(KeepAlivePolicy)
+ */
+public final class KeepAlivePolicy {
+
+    /**
+     * Policy that disconnects clients as soon as their last subscriber was disposed of
+     */
+    public static final KeepAlivePolicy NONE = new Builder().linger(0, TimeUnit.NANOSECONDS).build();
+
+    private final long minLingerNanos;
+    private final long maxLingerNanos;
+    private final boolean adaptive;
+    private final int maxIdleClients;
+
+    private KeepAlivePolicy(Builder builder) {
+        this.minLingerNanos = builder.minLingerNanos;
+        this.maxLingerNanos = builder.maxLingerNanos;
+        this.adaptive = builder.adaptive;
+        this.maxIdleClients = builder.maxIdleClients;
+    }
+
+    /**
+     * @param averageGapNanos average time between a client becoming idle and its next subscriber,
+     *                        {@code -1} if nothing was observed yet
+     * @return time to keep an idle client connected, {@code 0} to disconnect it immediately
+     */
+    long lingerNanos(long averageGapNanos) {
+        if (!adaptive || averageGapNanos < 0) {
+            return maxLingerNanos;
+        }
+        if (averageGapNanos > maxLingerNanos) {
+            // Subscribers usually return too late for lingering to pay off
+            return minLingerNanos;
+        }
+        return Math.max(minLingerNanos, Math.min(2 * averageGapNanos, maxLingerNanos));
+    }
+
+    int maxIdleClients() {
+        return maxIdleClients;
+    }
+
+    /**
+     * Builder for a {@link KeepAlivePolicy}
+     */
+    public static final class Builder {
+
+        private long minLingerNanos = TimeUnit.SECONDS.toNanos(5);
+        private long maxLingerNanos = TimeUnit.SECONDS.toNanos(5);
+        private boolean adaptive;
+        private int maxIdleClients = 4;
+
+        /**
+         * Keeps idle clients connected for a fixed time, defaults to 5 seconds
+         *
+         * @param linger time to keep idle clients connected
+         * @param unit   unit of the time
+         * @return this builder
+         */
+        public Builder linger(long linger, TimeUnit unit) {
+            if (linger < 0) {
+                throw new IllegalArgumentException("linger >= 0 required but it was " + linger);
+            }
+            this.minLingerNanos = unit.toNanos(linger);
+            this.maxLingerNanos = minLingerNanos;
+            this.adaptive = false;
+            return this;
+        }
+
+        /**
+         * Keeps idle clients connected for twice the average time it took until the next
+         * subscription for the same api, within the given bounds. If subscriptions usually return
+         * later than the maximum, idle clients are only kept for the minimum.
+         *
+         * @param minLinger minimum time to keep idle clients connected
+         * @param maxLinger maximum time to keep idle clients connected
+         * @param unit      unit of the times
+         * @return this builder
+         */
+        public Builder adaptiveLinger(long minLinger, long maxLinger, TimeUnit unit) {
+            if (minLinger < 0 || maxLinger < minLinger) {
+                throw new IllegalArgumentException("0 <= minLinger <= maxLinger required but it was "
+                        + minLinger + ", " + maxLinger);
+            }
+            this.minLingerNanos = unit.toNanos(minLinger);
+            this.maxLingerNanos = unit.toNanos(maxLinger);
+            this.adaptive = true;
+            return this;
+        }
+
+        /**
+         * @param maxIdleClients maximum number of idle clients kept connected, defaults to 4
+         * @return this builder
+         */
+        public Builder maxIdleClients(int maxIdleClients) {
+            if (maxIdleClients < 0) {
+                throw new IllegalArgumentException("maxIdleClients >= 0 required but it was " + maxIdleClients);
+            }
+            this.maxIdleClients = maxIdleClients;
+            return this;
+        }
+
+        public KeepAlivePolicy build() {
+            return new KeepAlivePolicy(this);
+        }
+    }
+}
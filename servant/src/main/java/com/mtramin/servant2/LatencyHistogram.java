@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds.
+ * <p>
+ * Values are recorded into logarithmic buckets that are divided into {@value #SUB_BUCKETS} linear
+ * sub buckets each, which bounds the error of reported percentiles to 12.5%.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 1) {
+            nanos = 1;
+        }
+
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+
+        long currentMax;
+        do {
+            currentMax = max.get();
+        } while (nanos > currentMax && !max.compareAndSet(currentMax, nanos));
+    }
+
+    LatencySnapshot snapshot() {
+        long[] counts = new long[buckets.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+
+        long mean = total == 0 ? 0 : sum.get() / total;
+        long max = this.max.get();
+        return new LatencySnapshot(total,
+                mean,
+                Math.min(percentile(counts, total, 0.5), max),
+                Math.min(percentile(counts, total, 0.9), max),
+                Math.min(percentile(counts, total, 0.99), max),
+                max);
+    }
+
+    private static long percentile(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(counts.length - 1);
+    }
+
+    private static int bucketOf(long nanos) {
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent < SUB_BUCKET_BITS) {
+            return exponent * SUB_BUCKETS;
+        }
+        int subBucket = (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return exponent * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        int exponent = bucket / SUB_BUCKETS;
+        if (exponent < SUB_BUCKET_BITS) {
+            return (2L << exponent) - 1;
+        }
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1L) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+/**
+ * Snapshot of recorded latencies. All latencies are in nanoseconds.
+ */
+public final class LatencySnapshot {
+
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long max;
+
+    LatencySnapshot(long count, long mean, long p50, long p90, long p99, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    public long count() {
+        return count;
+    }
+
+    public long mean() {
+        return mean;
+    }
+
+    public long p50() {
+        return p50;
+    }
+
+    public long p90() {
+        return p90;
+    }
+
+    public long p99() {
+        return p99;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{count=" + count
+                + ", mean=" + mean
+                + ", p50=" + p50
+                + ", p90=" + p90
+                + ", p99=" + p99
+                + ", max=" + max
+                + '}';
+    }
+}
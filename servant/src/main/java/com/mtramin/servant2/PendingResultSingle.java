@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.Api;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executes a {@link BatchRequest} on an already connected {@link GoogleApiClient} and serves its
+ * unwrapped result as a {@link Single}.
+ * <p>
+ * The {@link PendingResult} is canceled if the Single is disposed of before the result arrived.
+ * Results that are not emitted, as they failed or arrived after the Single was disposed of, are
+ * released.
+ */
+final class PendingResultSingle<T, R extends Result> implements SingleOnSubscribe<T> {
+
+    private final Api api;
+    private final GoogleApiClient googleApiClient;
+    private final BatchRequest<T, R> request;
+
+    private PendingResultSingle(Api api, GoogleApiClient googleApiClient, BatchRequest<T, R> request) {
+        this.api = api;
+        this.googleApiClient = googleApiClient;
+        this.request = request;
+    }
+
+    static <T, R extends Result> Single<T> create(Api api,
+                                                  GoogleApiClient googleApiClient,
+                                                  BatchRequest<T, R> request) {
+        return Single.create(new PendingResultSingle<>(api, googleApiClient, request));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void subscribe(SingleEmitter<T> emitter) throws Exception {
+        long requestStartedAt = System.nanoTime();
+        ServantTrace.record(ServantTrace.REQUEST_SENT, api, request, 0);
+        PendingResult<? super R> pendingResult = request.createRequest(googleApiClient);
+        AtomicBoolean completed = new AtomicBoolean();
+        emitter.setCancellable(() -> {
+            if (completed.compareAndSet(false, true)) {
+                ServantTrace.record(ServantTrace.REQUEST_CANCELED, api, request, 0);
+                pendingResult.cancel();
+            }
+        });
+
+        PendingResults.setResultCallback(pendingResult, result -> {
+            completed.set(true);
+            ServantTrace.record(ServantTrace.REQUEST_COMPLETED, api, request,
+                    result.getStatus().getStatusCode());
+            boolean success = result.getStatus().isSuccess();
+            Servant.getMetrics().onRequestCompleted(api, System.nanoTime() - requestStartedAt, success);
+
+            if (emitter.isDisposed()) {
+                PendingResults.release(result);
+                return;
+            }
+
+            if (!success) {
+                PendingResults.release(result);
+                emitter.onError(PendingResults.error(result.getStatus()));
+                return;
+            }
+
+            T value;
+            try {
+                value = request.unwrap((R) result);
+            } catch (Exception e) {
+                PendingResults.release(result);
+                emitter.onError(e);
+                return;
+            }
+            emitter.onSuccess(value);
+        }, Servant.getRequestTimeoutNanos());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Releasable;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers to handle {@link PendingResult}s of requests
+ */
+final class PendingResults {
+
+    private PendingResults() {
+        // no instances
+    }
+
+    /**
+     * Sets the callback of the pending result, which will be canceled if its result did not
+     * arrive within the given timeout.
+     *
+     * @param pendingResult pending result of the request
+     * @param callback      callback for the result
+     * @param timeoutNanos  maximum time for the result to arrive, {@code 0} to wait forever
+     * @param <R>           type of the result
+     */
+    static <R extends Result> void setResultCallback(PendingResult<R> pendingResult,
+                                                     ResultCallback<? super R> callback,
+                                                     long timeoutNanos) {
+        if (timeoutNanos > 0) {
+            pendingResult.setResultCallback(callback, timeoutNanos, TimeUnit.NANOSECONDS);
+        } else {
+            pendingResult.setResultCallback(callback);
+        }
+    }
+
+    /**
+     * @param status status of an unsuccessful result
+     * @return exception describing the failed request
+     */
+    static ClientException error(Status status) {
+        if (status.getStatusCode() == CommonStatusCodes.TIMEOUT) {
+            return new ClientTimeoutException("Client request timed out.");
+        }
+        return new StatusException(status);
+    }
+
+    /**
+     * Releases a result that will not be emitted, e.g. as it failed or its subscriber is gone.
+     *
+     * @param result result of a request
+     */
+    static void release(Result result) {
+        if (result instanceof Releasable) {
+            ((Releasable) result).release();
+        }
+    }
+}
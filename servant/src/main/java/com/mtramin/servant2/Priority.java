@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+/**
+ * Priority of a request that waits for admission when the concurrency limit of its api is
+ * reached. Waiting requests are admitted by priority and in subscription order within a priority.
+ *
+ * @see Servant#setConcurrencyLimit(com.google.android.gms.common.api.Api, int)
+ */
+public enum Priority {
+
+    /**
+     * User-visible requests, e.g. signing in
+     */
+    HIGH,
+
+    /**
+     * Default priority
+     */
+    NORMAL,
+
+    /**
+     * Background work, e.g. prefetching
+     */
+    LOW
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tracks whether the process is in the foreground by counting its started activities.
+ * <p>
+ * Once the last activity was stopped for longer than the background delay, idle shared clients
+ * are disconnected and long-lived clients are paused. Only connections whose clients all handle
+ * reconnects, e.g. those of {@link Servant#observable(android.content.Context,
+ * com.google.android.gms.common.api.Api)}, are paused. Once an activity is started again, all
+ * paused clients reconnect at once.
+ * <p>
+ * Only connections created while lifecycle management is enabled are tracked.
+ */
+final class ProcessLifecycle implements Application.ActivityLifecycleCallbacks {
+
+    private static final Set<ClientConnection> connections = new HashSet<>();
+    private static volatile boolean enabled;
+
+    private final Application application;
+    private long backgroundDelayMillis;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable enterBackground = this::enterBackground;
+
+    private int startedActivities;
+    private boolean background;
+
+    ProcessLifecycle(Application application, long backgroundDelayMillis) {
+        this.application = application;
+        this.backgroundDelayMillis = backgroundDelayMillis;
+    }
+
+    /**
+     * Starts or stops tracking connections. Stopping forgets all tracked connections.
+     *
+     * @param enabled whether lifecycle management is enabled
+     */
+    static synchronized void setEnabled(boolean enabled) {
+        ProcessLifecycle.enabled = enabled;
+        if (!enabled) {
+            connections.clear();
+        }
+    }
+
+    static void register(ClientConnection connection) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (ProcessLifecycle.class) {
+            if (enabled) {
+                connections.add(connection);
+            }
+        }
+    }
+
+    static void unregister(ClientConnection connection) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (ProcessLifecycle.class) {
+            connections.remove(connection);
+        }
+    }
+
+    static synchronized List<ClientConnection> connections() {
+        return new ArrayList<>(connections);
+    }
+
+    int startedActivities() {
+        return startedActivities;
+    }
+
+    /**
+     * @param backgroundDelayMillis time without started activities until the process is
+     *                              considered to be in the background
+     */
+    void setBackgroundDelay(long backgroundDelayMillis) {
+        this.backgroundDelayMillis = backgroundDelayMillis;
+    }
+
+    void start() {
+        setEnabled(true);
+        application.registerActivityLifecycleCallbacks(this);
+    }
+
+    void stop() {
+        application.unregisterActivityLifecycleCallbacks(this);
+        handler.removeCallbacks(enterBackground);
+        if (background) {
+            enterForeground();
+        }
+    }
+
+    private void enterBackground() {
+        background = true;
+        ClientPool.evictIdle();
+        for (ClientConnection connection : connections()) {
+            connection.pause();
+        }
+    }
+
+    private void enterForeground() {
+        background = false;
+        for (ClientConnection connection : connections()) {
+            connection.resume();
+        }
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        if (startedActivities++ == 0) {
+            handler.removeCallbacks(enterBackground);
+            if (background) {
+                enterForeground();
+            }
+        }
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (startedActivities > 0 && --startedActivities == 0) {
+            // Delayed to not disconnect during configuration changes
+            handler.postDelayed(enterBackground, backgroundDelayMillis);
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+}
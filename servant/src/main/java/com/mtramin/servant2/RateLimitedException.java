@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+/**
+ * Exception that is thrown when a request was not sent as the {@link RateLimiter} of its api had
+ * no permit left and does not wait for permits.
+ */
+public class RateLimitedException extends ClientException {
+
+    private final long retryAfterNanos;
+
+    public RateLimitedException(String message, long retryAfterNanos) {
+        super(message);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * @return time in nanoseconds until the next permit is available
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return true;
+    }
+}
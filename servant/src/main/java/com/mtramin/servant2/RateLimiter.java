@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting the rate of requests of an api.
+ * <p>
+ * The bucket refills at a steady rate up to its burst size. Requests without a permit either wait
+ * until their permit is available or fail fast with a {@link RateLimitedException}.
+ * <p>
+ * A request takes its permit before its client is built, so that requests waiting for their
+ * permit do not hold a connected client. Waiting requests continue on the thread the callbacks of
+ * their client are delivered on. Permits are not returned, e.g. when the request is disposed of
+ * while waiting for its permit.
+ * <p>
+ * Acquiring permits is lock-free: the bucket is stored as the time at which it will be full again,
+ * which is updated with a single compare-and-set.
+ *
+ * @see Servant#setRateLimiter(com.google.android.gms.common.api.Api, RateLimiter)
+ */
+public final class RateLimiter {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final boolean waitForPermits;
+
+    /**
+     * Time at which the bucket will be full again, relative to {@link System#nanoTime()}
+     */
+    private final AtomicLong fullAt;
+
+    private RateLimiter(Builder builder) {
+        this.intervalNanos = Math.max(1, builder.intervalNanos);
+        this.burstNanos = intervalNanos * builder.burst;
+        this.waitForPermits = builder.waitForPermits;
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Acquires a permit.
+     *
+     * @return {@code 0} if a permit is available now, the time in nanoseconds until the reserved
+     * permit is available if the limiter waits for permits, or the negated time until the next
+     * permit is available if it fails fast
+     */
+    long acquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long delay = next - now - burstNanos;
+            if (delay > 0 && !waitForPermits) {
+                return -delay;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return Math.max(delay, 0);
+            }
+        }
+    }
+
+    /**
+     * Builder for a {@link RateLimiter}
+     */
+    public static final class Builder {
+
+        private long intervalNanos = TimeUnit.SECONDS.toNanos(1);
+        private int burst = 1;
+        private boolean waitForPermits = true;
+
+        /**
+         * @param permits number of permits that are refilled per period, defaults to 1
+         * @param period  period the permits are refilled in, defaults to 1 second
+         * @param unit    unit of the period
+         * @return this builder
+         */
+        public Builder rate(int permits, long period, TimeUnit unit) {
+            if (permits <= 0) {
+                throw new IllegalArgumentException("permits > 0 required but it was " + permits);
+            }
+            this.intervalNanos = unit.toNanos(period) / permits;
+            return this;
+        }
+
+        /**
+         * @param burst number of permits that can be acquired at once after being idle, defaults
+         *              to 1
+         * @return this builder
+         */
+        public Builder burst(int burst) {
+            if (burst <= 0) {
+                throw new IllegalArgumentException("burst > 0 required but it was " + burst);
+            }
+            this.burst = burst;
+            return this;
+        }
+
+        /**
+         * @param waitForPermits whether requests without a permit wait for it or fail with a
+         *                       {@link RateLimitedException}, defaults to waiting
+         * @return this builder
+         */
+        public Builder waitForPermits(boolean waitForPermits) {
+            this.waitForPermits = waitForPermits;
+            return this;
+        }
+
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
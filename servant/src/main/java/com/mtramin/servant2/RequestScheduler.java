@@ -0,0 +1,264 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.Api;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Admission control for the clients of {@link GoogleApiClientSingle}s and
+ * {@link GoogleApiClientCompletable}s.
+ * <p>
+ * At most {@link Servant#setConcurrencyLimit(Api, int) the concurrency limit} of clients per
+ * {@link Api} are active at the same time. Further clients wait in a queue per {@link Priority}
+ * and are admitted in order once active clients are released. Waiting clients that are canceled
+ * are removed from the queue without ever connecting.
+ */
+final class RequestScheduler {
+
+    /**
+     * Ticket of all clients of apis without a limit
+     */
+    private static final Ticket UNLIMITED = new Ticket(null, null, null);
+
+    private static final Map<Api, ApiQueue> queues = new HashMap<>();
+
+    static {
+        UNLIMITED.admitted = true;
+    }
+
+    private RequestScheduler() {
+        // no instances
+    }
+
+    /**
+     * @param api      api of the client
+     * @param priority priority of the client
+     * @param start    starts the client if it is admitted later on, on the thread that admits
+     *                 it. If {@code null}, the caller has to wait with
+     *                 {@link Ticket#awaitAdmission()}
+     * @return ticket to pass to {@link #admit(Ticket)} and {@link #release(Ticket)}
+     */
+    static Ticket ticket(Api api, Priority priority, Runnable start) {
+        if (Servant.getConcurrencyLimit(api) <= 0) {
+            return UNLIMITED;
+        }
+        return new Ticket(api, priority, start);
+    }
+
+    /**
+     * Admits a client immediately or queues it until it can be admitted.
+     *
+     * @param ticket ticket of the client
+     * @return whether the client was admitted immediately and has to be started by the caller
+     */
+    static boolean admit(Ticket ticket) {
+        if (ticket == UNLIMITED) {
+            return true;
+        }
+
+        int limit = Servant.getConcurrencyLimit(ticket.api);
+        synchronized (RequestScheduler.class) {
+            if (ticket.released) {
+                return false;
+            }
+            ApiQueue queue = queues.get(ticket.api);
+            if (queue == null) {
+                queue = new ApiQueue();
+                queues.put(ticket.api, queue);
+            }
+            if ((limit <= 0 || queue.active < limit) && queue.waiting == 0) {
+                queue.active++;
+                ticket.admitted = true;
+            } else {
+                queue.offer(ticket);
+            }
+            return ticket.admitted;
+        }
+    }
+
+    /**
+     * Releases an admitted client and admits the next waiting ones, or removes a waiting client
+     * from its queue. Must be called once for every ticket.
+     *
+     * @param ticket ticket of the client
+     */
+    static void release(Ticket ticket) {
+        if (ticket == UNLIMITED) {
+            return;
+        }
+
+        Ticket[] next;
+        synchronized (RequestScheduler.class) {
+            if (ticket.released) {
+                return;
+            }
+            ticket.released = true;
+
+            ApiQueue queue = queues.get(ticket.api);
+            if (queue == null) {
+                // Released before it was admitted or queued
+                return;
+            }
+            if (!ticket.admitted) {
+                queue.remove(ticket);
+                next = null;
+            } else {
+                queue.active--;
+                next = admitNext(ticket.api, queue);
+            }
+            if (queue.active == 0 && queue.waiting == 0) {
+                queues.remove(ticket.api);
+            }
+        }
+
+        synchronized (ticket) {
+            ticket.notifyAll();
+        }
+        if (next != null) {
+            for (Ticket admitted : next) {
+                admitted.start();
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock of the scheduler.
+     *
+     * @return the newly admitted tickets or {@code null} if none were admitted
+     */
+    private static Ticket[] admitNext(Api api, ApiQueue queue) {
+        int limit = Servant.getConcurrencyLimit(api);
+        int count = limit <= 0 ? queue.waiting : Math.min(queue.waiting, limit - queue.active);
+        if (count <= 0) {
+            return null;
+        }
+
+        Ticket[] next = new Ticket[count];
+        for (int i = 0; i < count; i++) {
+            Ticket ticket = queue.poll();
+            ticket.admitted = true;
+            queue.active++;
+            next[i] = ticket;
+        }
+        return next;
+    }
+
+    /**
+     * Admission of a single client
+     */
+    static final class Ticket {
+
+        private final Api api;
+        private final Priority priority;
+        private final Runnable start;
+
+        private boolean admitted;
+        private boolean released;
+
+        private Ticket(Api api, Priority priority, Runnable start) {
+            this.api = api;
+            this.priority = priority;
+            this.start = start;
+        }
+
+        /**
+         * Waits until the client was admitted.
+         *
+         * @return whether the client was admitted, {@code false} if it was released while waiting
+         * or the thread was interrupted
+         */
+        boolean awaitAdmission() {
+            synchronized (RequestScheduler.class) {
+                if (admitted || released) {
+                    return admitted && !released;
+                }
+            }
+
+            try {
+                synchronized (this) {
+                    while (!isAdmittedOrReleased()) {
+                        wait();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                release(this);
+                return false;
+            }
+
+            synchronized (RequestScheduler.class) {
+                return admitted && !released;
+            }
+        }
+
+        private boolean isAdmittedOrReleased() {
+            synchronized (RequestScheduler.class) {
+                return admitted || released;
+            }
+        }
+
+        private void start() {
+            if (start != null) {
+                start.run();
+            } else {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Active and waiting clients of a single api. Guarded by the lock of the scheduler.
+     */
+    private static final class ApiQueue {
+
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<Ticket>[] byPriority = new ArrayDeque[Priority.values().length];
+        private int active;
+        private int waiting;
+
+        void offer(Ticket ticket) {
+            int index = ticket.priority.ordinal();
+            if (byPriority[index] == null) {
+                byPriority[index] = new ArrayDeque<>();
+            }
+            byPriority[index].offer(ticket);
+            waiting++;
+        }
+
+        Ticket poll() {
+            for (ArrayDeque<Ticket> queue : byPriority) {
+                if (queue != null && !queue.isEmpty()) {
+                    waiting--;
+                    return queue.poll();
+                }
+            }
+            return null;
+        }
+
+        void remove(Ticket ticket) {
+            ArrayDeque<Ticket> queue = byPriority[ticket.priority.ordinal()];
+            if (queue != null && queue.remove(ticket)) {
+                waiting--;
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache for results of {@link GoogleApiClientRequestSingle}s.
+ * <p>
+ * Entries expire after the time to live they were stored with. If the cache exceeds its maximum
+ * weight the least recently used entries are evicted. By default every entry has a weight of one,
+ * so the maximum weight is the maximum number of entries.
+ * <p>
+ * A cache can be shared between requests of different types, as long as their request keys do not
+ * collide.
+ *
+ * @see GoogleApiClientRequestSingle#cacheIn(ResultCache, long, java.util.concurrent.TimeUnit)
+ */
+public final class ResultCache {
+
+    /**
+     * Calculates the weight of a cache entry
+     */
+    public interface Weigher {
+
+        /**
+         * @param key   key of the entry
+         * @param value cached value
+         * @return weight of the entry, must not be negative
+         */
+        int weigh(Object key, Object value);
+    }
+
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final Weigher weigher;
+    private long weight;
+
+    /**
+     * @param maxEntries maximum number of cached results
+     */
+    public ResultCache(int maxEntries) {
+        this(maxEntries, (key, value) -> 1);
+    }
+
+    /**
+     * @param maxWeight maximum total weight of all cached results
+     * @param weigher   calculates the weight of a single result
+     */
+    public ResultCache(long maxWeight, Weigher weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight > 0 required but it was " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * @param key key of the result
+     * @return the cached result or {@code null} if there is no result or it is expired
+     */
+    synchronized Object get(Object key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(Object key, Object value, long ttlNanos) {
+        int entryWeight = weigher.weigh(key, value);
+        if (entryWeight > maxWeight) {
+            remove(key);
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(value, entryWeight, System.nanoTime() + ttlNanos));
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entryWeight;
+
+        Iterator<Map.Entry<Object, Entry>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes the cached result for the given key
+     *
+     * @param key key of the result
+     */
+    public synchronized void invalidate(Object key) {
+        remove(key);
+    }
+
+    /**
+     * Removes all cached results
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return number of cached results, including expired ones that were not evicted yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void remove(Object key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    private static final class Entry {
+        final Object value;
+        final int weight;
+        final long expiresAt;
+
+        Entry(Object value, int weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes results of {@link GoogleApiClientRequestSingle}s to a {@link ResultStore} and reads them
+ * back, e.g. at the next start of the app.
+ *
+ * @param <T> type of the results
+ */
+public interface ResultSerializer<T> {
+
+    /**
+     * @param value result to write
+     * @param out   output of the stored file
+     * @throws IOException if the result could not be written
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * @param in input of the stored file, positioned at the data written by
+     *           {@link #write(Object, DataOutput)}
+     * @return the stored result
+     * @throws IOException if the result could not be read, the stored result is then discarded
+     */
+    T read(DataInput in) throws IOException;
+}
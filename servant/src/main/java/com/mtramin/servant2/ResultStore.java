@@ -0,0 +1,291 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import android.content.Context;
+
+import io.reactivex.Maybe;
+import io.reactivex.Scheduler;
+import io.reactivex.plugins.RxJavaPlugins;
+import io.reactivex.schedulers.Schedulers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent store for results of {@link GoogleApiClientRequestSingle}s, e.g. to show the last
+ * known result at a cold start of the app before a client connected.
+ * <p>
+ * Every result is stored in its own file in the private files directory of the app, written with
+ * the {@link ResultSerializer} of its request. Files are read, written and removed on
+ * {@link Schedulers#io()}, never on the subscribing thread, one after another in the order they
+ * were requested by any store of the same name. Request keys are identified by their {@link Object#toString()} across starts of
+ * the app.
+ *
+ * @see GoogleApiClientRequestSingle#storeIn(ResultStore, ResultSerializer)
+ * @see Servant#staleWhileRevalidate(GoogleApiClientRequestSingle, boolean)
+ */
+public final class ResultStore {
+
+    private static final int VERSION = 1;
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Stores with equal names share their files, so they share the order of their file operations
+    private static final ConcurrentHashMap<String, Scheduler> schedulers = new ConcurrentHashMap<>();
+
+    private final Context context;
+    private final String name;
+    private final long maxAgeMillis;
+    private final Scheduler scheduler;
+    private File directory;
+
+    /**
+     * @param context context of the app
+     * @param name    name of the store, stores with equal names share their results
+     */
+    public ResultStore(Context context, String name) {
+        this(context, name, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param context context of the app
+     * @param name    name of the store, stores with equal names share their results
+     * @param maxAge  maximum age of stored results, older results are discarded
+     * @param unit    unit of the maximum age
+     */
+    public ResultStore(Context context, String name, long maxAge, TimeUnit unit) {
+        if (maxAge <= 0) {
+            throw new IllegalArgumentException("maxAge > 0 required but it was " + maxAge);
+        }
+        this.context = context.getApplicationContext();
+        this.name = name;
+        this.maxAgeMillis = unit.toMillis(maxAge);
+        this.scheduler = scheduler(name);
+    }
+
+    private static Scheduler scheduler(String name) {
+        Scheduler scheduler = schedulers.get(name);
+        if (scheduler == null) {
+            Scheduler created = Schedulers.from(new SerialExecutor());
+            scheduler = schedulers.putIfAbsent(name, created);
+            if (scheduler == null) {
+                scheduler = created;
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Reads the stored result for the given key on {@link Schedulers#io()}.
+     *
+     * @param key        key of the result
+     * @param serializer serializer the result was written with
+     * @param <T>        type of the result
+     * @return the stored result or an empty Maybe if there is none or it is too old
+     */
+    <T> Maybe<T> read(Object key, ResultSerializer<T> serializer) {
+        return Maybe.<T>create(emitter -> {
+            T value = load(key, serializer);
+            if (value == null) {
+                emitter.onComplete();
+            } else {
+                emitter.onSuccess(value);
+            }
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Writes the result for the given key on {@link Schedulers#io()}, replacing the stored result.
+     *
+     * @param key        key of the result
+     * @param value      result to store
+     * @param serializer serializer to write the result with
+     * @param <T>        type of the result
+     */
+    <T> void write(Object key, T value, ResultSerializer<T> serializer) {
+        scheduler.scheduleDirect(() -> save(key, value, serializer));
+    }
+
+    /**
+     * Removes the stored result for the given key on {@link Schedulers#io()}, after all results
+     * that were written before. Results that are written afterwards are stored again.
+     *
+     * @param key key of the result
+     */
+    public void invalidate(Object key) {
+        scheduler.scheduleDirect(() -> remove(key));
+    }
+
+    /**
+     * Removes all stored results on {@link Schedulers#io()}, after all results that were written
+     * before. Results that are written afterwards are stored again.
+     */
+    public void invalidateAll() {
+        scheduler.scheduleDirect(this::removeAll);
+    }
+
+    private synchronized <T> T load(Object key, ResultSerializer<T> serializer) {
+        String storedKey = String.valueOf(key);
+        File file = file(key);
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        try {
+            if (in.readInt() != VERSION || !storedKey.equals(in.readUTF())) {
+                return null;
+            }
+            long storedAt = in.readLong();
+            if (System.currentTimeMillis() - storedAt > maxAgeMillis) {
+                delete(file);
+                return null;
+            }
+            return serializer.read(in);
+        } catch (IOException | RuntimeException e) {
+            // Written by another version of the serializer or truncated
+            delete(file);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    private synchronized <T> void save(Object key, T value, ResultSerializer<T> serializer) {
+        File file = file(key);
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        DataOutputStream out = null;
+        try {
+            directory().mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(VERSION);
+            out.writeUTF(String.valueOf(key));
+            out.writeLong(System.currentTimeMillis());
+            serializer.write(value, out);
+            out.close();
+            out = null;
+
+            // Readers never see a partially written result
+            if (!temp.renameTo(file)) {
+                delete(temp);
+            }
+        } catch (IOException | RuntimeException e) {
+            close(out);
+            delete(temp);
+        }
+    }
+
+    private synchronized void remove(Object key) {
+        delete(file(key));
+    }
+
+    private synchronized void removeAll() {
+        File[] files = directory().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                delete(file);
+            }
+        }
+    }
+
+    private File file(Object key) {
+        return new File(directory(), hash(String.valueOf(key)));
+    }
+
+    private synchronized File directory() {
+        if (directory == null) {
+            directory = new File(new File(context.getFilesDir(), "servant"), name);
+        }
+        return directory;
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void delete(File file) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing to do
+        }
+    }
+
+    /**
+     * Runs tasks one after another on {@link Schedulers#io()}, in the order they were submitted,
+     * without keeping a thread while there are no tasks.
+     */
+    private static final class SerialExecutor implements Executor {
+
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.offer(task);
+            if (pending.getAndIncrement() == 0) {
+                Schedulers.io().scheduleDirect(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                try {
+                    tasks.poll().run();
+                } catch (RuntimeException e) {
+                    // Keeps running the following tasks
+                    RxJavaPlugins.onError(e);
+                }
+            } while (pending.decrementAndGet() != 0);
+        }
+    }
+}
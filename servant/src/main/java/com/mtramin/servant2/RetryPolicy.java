@@ -0,0 +1,157 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import io.reactivex.functions.Predicate;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy for retrying failed connections of a {@link com.google.android.gms.common.api.GoogleApiClient}.
+ * <p>
+ * Retries reconnect the existing client after an exponentially growing, randomized delay. By
+ * default only failures that are {@link ClientException#isRetryable() retryable} are retried.
+ *
+ * @see Servant#setRetryPolicy(RetryPolicy)
+ */
+public final class RetryPolicy {
+
+    /**
+     * Policy that never retries
+     */
+    public static final RetryPolicy NONE = new Builder().maxRetries(0).build();
+
+    private static final Random random = new Random();
+
+    private final int maxRetries;
+    private final long initialDelayNanos;
+    private final long maxDelayNanos;
+    private final double multiplier;
+    private final double jitter;
+    private final Predicate<? super ClientException> retryIf;
+
+    private RetryPolicy(Builder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.initialDelayNanos = builder.initialDelayNanos;
+        this.maxDelayNanos = builder.maxDelayNanos;
+        this.multiplier = builder.multiplier;
+        this.jitter = builder.jitter;
+        this.retryIf = builder.retryIf;
+    }
+
+    /**
+     * @param exception failure of the last attempt
+     * @param retry     number of the retry that would be performed, starting at {@code 1}
+     * @return whether the failure should be retried
+     */
+    boolean shouldRetry(ClientException exception, int retry) {
+        if (retry > maxRetries) {
+            return false;
+        }
+
+        try {
+            return retryIf.test(exception);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param retry number of the retry, starting at {@code 1}
+     * @return delay before the retry is performed
+     */
+    long delayNanos(int retry) {
+        double delay = Math.min(initialDelayNanos * Math.pow(multiplier, retry - 1), maxDelayNanos);
+        return (long) (delay * (1 - jitter * random.nextDouble()));
+    }
+
+    /**
+     * Builder for a {@link RetryPolicy}
+     */
+    public static final class Builder {
+
+        private int maxRetries = 3;
+        private long initialDelayNanos = TimeUnit.SECONDS.toNanos(1);
+        private long maxDelayNanos = TimeUnit.SECONDS.toNanos(30);
+        private double multiplier = 2;
+        private double jitter = 0.5;
+        private Predicate<? super ClientException> retryIf = ClientException::isRetryable;
+
+        /**
+         * @param maxRetries maximum number of retries after the first attempt, defaults to 3
+         * @return this builder
+         */
+        public Builder maxRetries(int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("maxRetries >= 0 required but it was " + maxRetries);
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * @param initialDelay delay before the first retry, defaults to 1 second
+         * @param maxDelay     maximum delay between retries, defaults to 30 seconds
+         * @param unit         unit of the delays
+         * @return this builder
+         */
+        public Builder backoff(long initialDelay, long maxDelay, TimeUnit unit) {
+            this.initialDelayNanos = unit.toNanos(initialDelay);
+            this.maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        /**
+         * @param multiplier factor the delay grows with on every retry, defaults to 2
+         * @return this builder
+         */
+        public Builder multiplier(double multiplier) {
+            if (multiplier < 1) {
+                throw new IllegalArgumentException("multiplier >= 1 required but it was " + multiplier);
+            }
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /**
+         * @param jitter fraction of each delay that is randomized to spread out retries of many
+         *               devices, between 0 and 1, defaults to 0.5
+         * @return this builder
+         */
+        public Builder jitter(double jitter) {
+            if (jitter < 0 || jitter > 1) {
+                throw new IllegalArgumentException("jitter between 0 and 1 required but it was " + jitter);
+            }
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param retryIf decides whether a failure should be retried, defaults to
+         *                {@link ClientException#isRetryable()}
+         * @return this builder
+         */
+        public Builder retryIf(Predicate<? super ClientException> retryIf) {
+            this.retryIf = retryIf;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
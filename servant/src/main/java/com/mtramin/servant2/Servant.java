@@ -16,29 +16,389 @@
 
 package com.mtramin.servant2;
 
+import android.app.Application;
 import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.support.annotation.Nullable;
 
 import com.google.android.gms.common.api.Api;
 import com.google.android.gms.common.api.GoogleApiClient;
 
+import org.reactivestreams.Publisher;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
 import io.reactivex.functions.Consumer;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Provides multiple ways to easily use the Google Play Services {@link GoogleApiClient}.
  * <p>
  * To create a client and use it callback=style, use {@link #actions(Context, Api, Consumer, Consumer)}
  * <p>
- * To retrieve a client as an {@link Observable}, use {@link #observable(Context, Api)}.
+ * To retrieve a client as an {@link Observable}, use {@link #observable(Context, Api)}. To keep
+ * it alive through connection suspensions, use {@link #resilientObservable(Context, Api, RetryPolicy)}.
  * <p>
  * To use a client as a Single, call {@link #single(GoogleApiClientSingle)}
  * <p>
  * To use a client as a Completable, call {@link #completable(GoogleApiClientCompletable)}
+ * <p>
+ * To stream continuous results of a client, call {@link #flowable(GoogleApiClientFlowable, BackpressureStrategy)}
+ * <p>
+ * To execute many requests over one client, call {@link #batch(Context, Api, Publisher, int, boolean)}
+ * <p>
+ * To stream the entries of a {@link com.google.android.gms.common.data.DataBuffer} result, call
+ * {@link #dataBuffer(Context, Api, DataBufferRequest)}
+ * <p>
+ * To connect one client for several APIs at once, pass a {@link CompositeApi}. Such clients are
+ * limited and measured as clients of the first of their APIs.
  */
 public class Servant {
 
+    private static volatile boolean clientPoolingEnabled;
+    private static volatile long connectTimeoutNanos;
+    private static volatile long requestTimeoutNanos;
+    private static volatile RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private static volatile KeepAlivePolicy keepAlivePolicy = KeepAlivePolicy.NONE;
+    private static volatile int defaultConcurrencyLimit;
+    private static final Map<Api, Integer> concurrencyLimits = new ConcurrentHashMap<>();
+    private static final Map<Api, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+    private static volatile CircuitBreaker circuitBreaker;
+    private static volatile ServantMetrics metrics = new ServantMetricsRecorder();
+    private static volatile ClientFactory clientFactory = ClientFactory.DEFAULT;
+    private static volatile Handler callbackHandler;
+    private static Handler callbackThreadHandler;
+    private static ProcessLifecycle processLifecycle;
+
+    /**
+     * Enables or disables the sharing of clients. When enabled, all concurrent subscribers for the
+     * same api and options with the same {@link RetryPolicy} will share one connected
+     * {@link GoogleApiClient}, which is disconnected once the last subscriber was disposed of and
+     * the {@link KeepAlivePolicy} expired. Disabled by default.
+     * <p>
+     * Shared clients must not be disconnected manually.
+     *
+     * @param enabled whether clients should be shared
+     */
+    public static void setClientPoolingEnabled(boolean enabled) {
+        clientPoolingEnabled = enabled;
+    }
+
+    static boolean isClientPoolingEnabled() {
+        return clientPoolingEnabled;
+    }
+
+    /**
+     * Sets the default time a client may take to connect before it fails with a
+     * {@link ClientTimeoutException}. A timeout of {@code 0} disables the timeout, which is the
+     * default.
+     *
+     * @param timeout maximum time to connect
+     * @param unit    unit of the timeout
+     */
+    public static void setConnectTimeout(long timeout, TimeUnit unit) {
+        connectTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    static long getConnectTimeoutNanos() {
+        return connectTimeoutNanos;
+    }
+
+    /**
+     * Sets the default time a request may take to deliver its result before it fails with a
+     * {@link ClientTimeoutException}. A timeout of {@code 0} disables the timeout, which is the
+     * default.
+     *
+     * @param timeout maximum time for the result to arrive
+     * @param unit    unit of the timeout
+     */
+    public static void setRequestTimeout(long timeout, TimeUnit unit) {
+        requestTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    static long getRequestTimeoutNanos() {
+        return requestTimeoutNanos;
+    }
+
+    /**
+     * Sets the default policy for retrying failed connections. Retries reconnect the existing
+     * client instead of building a new one. Defaults to {@link RetryPolicy#NONE}.
+     *
+     * @param retryPolicy policy for failed connections
+     */
+    public static void setRetryPolicy(RetryPolicy retryPolicy) {
+        Servant.retryPolicy = retryPolicy;
+    }
+
+    static RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Limits the number of Singles and Completables of every api without an own limit that
+     * connect or wait for results at the same time. Further subscriptions wait until active ones
+     * completed and are admitted by their {@link Priority}, in subscription order within a
+     * priority. Waiting subscriptions that are disposed of never connect. Unlimited by default.
+     *
+     * @param maxConcurrent maximum number of active clients per api, {@code 0} for no limit
+     * @see GoogleApiClientSingle#priority(Priority)
+     */
+    public static void setConcurrencyLimit(int maxConcurrent) {
+        if (maxConcurrent < 0) {
+            throw new IllegalArgumentException("maxConcurrent >= 0 required but it was " + maxConcurrent);
+        }
+        defaultConcurrencyLimit = maxConcurrent;
+    }
+
+    /**
+     * Limits the number of Singles and Completables of the given api that connect or wait for
+     * results at the same time, overriding the limit of {@link #setConcurrencyLimit(int)}.
+     *
+     * @param api           api to limit
+     * @param maxConcurrent maximum number of active clients, {@code 0} for no limit
+     * @see #setConcurrencyLimit(int)
+     */
+    public static void setConcurrencyLimit(Api api, int maxConcurrent) {
+        if (maxConcurrent < 0) {
+            throw new IllegalArgumentException("maxConcurrent >= 0 required but it was " + maxConcurrent);
+        }
+        concurrencyLimits.put(api, maxConcurrent);
+    }
+
+    static int getConcurrencyLimit(Api api) {
+        Integer limit = concurrencyLimits.get(api);
+        return limit == null ? defaultConcurrencyLimit : limit;
+    }
+
+    /**
+     * Paces the requests of {@link GoogleApiClientRequestSingle}s of the given api with a token
+     * bucket before they are created, e.g. for apis that fail when they are called in bursts.
+     * Requests take their permit before their client is built.
+     *
+     * @param api         api to limit
+     * @param rateLimiter limiter for requests of the api, {@code null} to remove the limit
+     */
+    public static void setRateLimiter(Api api, @Nullable RateLimiter rateLimiter) {
+        if (rateLimiter == null) {
+            rateLimiters.remove(api);
+        } else {
+            rateLimiters.put(api, rateLimiter);
+        }
+    }
+
+    @Nullable
+    static RateLimiter getRateLimiter(Api api) {
+        return rateLimiters.isEmpty() ? null : rateLimiters.get(api);
+    }
+
+    /**
+     * Fails clients fast without building them while their api can not connect or Google Play
+     * Services is unavailable. Disabled by default.
+     *
+     * @param circuitBreaker circuit breaker for all apis, {@code null} to disable it
+     */
+    public static void setCircuitBreaker(@Nullable CircuitBreaker circuitBreaker) {
+        Servant.circuitBreaker = circuitBreaker;
+    }
+
+    @Nullable
+    static CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Sets the policy for keeping shared clients connected after their last subscriber was
+     * disposed of, so that subscriptions shortly after each other reuse the connected client.
+     * Only applies when client pooling is enabled. Defaults to {@link KeepAlivePolicy#NONE}.
+     *
+     * @param keepAlivePolicy policy for idle clients
+     * @see #setClientPoolingEnabled(boolean)
+     */
+    public static void setKeepAlivePolicy(KeepAlivePolicy keepAlivePolicy) {
+        if (keepAlivePolicy == null) {
+            throw new NullPointerException("keepAlivePolicy == null");
+        }
+        Servant.keepAlivePolicy = keepAlivePolicy;
+    }
+
+    static KeepAlivePolicy getKeepAlivePolicy() {
+        return keepAlivePolicy;
+    }
+
+    /**
+     * Manages clients along the lifecycle of the process. Once no activity was started for the
+     * given delay, idle shared clients are disconnected and long-lived clients, e.g. those of
+     * {@link #observable(Context, Api)}, are paused. When an activity starts again, all paused
+     * clients reconnect in parallel and emit their client again.
+     * <p>
+     * Only clients created after this call are managed. Calling it again while enabled only
+     * changes the delay. Must be called on the main thread, e.g. in
+     * {@link Application#onCreate()}.
+     *
+     * @param application    application whose activities are tracked
+     * @param backgroundDelay time without started activities until the process is considered to
+     *                       be in the background
+     * @param unit           unit of the delay
+     */
+    public static synchronized void enableLifecycleManagement(Application application,
+                                                              long backgroundDelay,
+                                                              TimeUnit unit) {
+        if (processLifecycle != null) {
+            // Keeps counting the started activities and the paused clients
+            processLifecycle.setBackgroundDelay(unit.toMillis(backgroundDelay));
+            return;
+        }
+        processLifecycle = new ProcessLifecycle(application, unit.toMillis(backgroundDelay));
+        processLifecycle.start();
+    }
+
+    static synchronized ProcessLifecycle getProcessLifecycle() {
+        return processLifecycle;
+    }
+
+    /**
+     * Stops managing clients along the lifecycle of the process and reconnects paused clients.
+     * Must be called on the main thread.
+     */
+    public static synchronized void disableLifecycleManagement() {
+        if (processLifecycle != null) {
+            processLifecycle.stop();
+            processLifecycle = null;
+        }
+        ProcessLifecycle.setEnabled(false);
+    }
+
+    /**
+     * Replaces the factory creating all {@link GoogleApiClient}s, e.g. to serve fake clients in
+     * tests and benchmarks. Defaults to {@link ClientFactory#DEFAULT}.
+     *
+     * @param clientFactory factory for clients
+     */
+    public static void setClientFactory(ClientFactory clientFactory) {
+        if (clientFactory == null) {
+            throw new NullPointerException("clientFactory == null");
+        }
+        Servant.clientFactory = clientFactory;
+    }
+
+    static ClientFactory getClientFactory() {
+        return clientFactory;
+    }
+
+    /**
+     * Sets the handler on which all clients deliver their connection callbacks and results, and
+     * thus on which all values are emitted. By default, callbacks are delivered on the main thread.
+     * <p>
+     * To move all callbacks off the main thread without managing a thread, use the shared callback
+     * thread of Servant:
+     * <pre>{@code
+     * Servant.setCallbackHandler(Servant.getCallbackThreadHandler());
+     * }</pre>
+     * Clients are only shared between subscribers that use the same handler.
+     *
+     * @param callbackHandler handler for callbacks, {@code null} for the main thread
+     */
+    public static void setCallbackHandler(@Nullable Handler callbackHandler) {
+        Servant.callbackHandler = callbackHandler;
+    }
+
+    @Nullable
+    static Handler getCallbackHandler() {
+        return callbackHandler;
+    }
+
+    /**
+     * @return handler of a background thread shared by all clients that use it, started on first use
+     */
+    public static synchronized Handler getCallbackThreadHandler() {
+        if (callbackThreadHandler == null) {
+            HandlerThread thread = new HandlerThread("Servant-callbacks", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            callbackThreadHandler = new Handler(thread.getLooper());
+        }
+        return callbackThreadHandler;
+    }
+
+    /**
+     * Sets the receiver of timed events about all clients and requests. Defaults to a
+     * {@link ServantMetricsRecorder}.
+     *
+     * @param metrics receiver of the events
+     */
+    public static void setMetrics(ServantMetrics metrics) {
+        if (metrics == null) {
+            throw new NullPointerException("metrics == null");
+        }
+        Servant.metrics = metrics;
+    }
+
+    /**
+     * @return the current receiver of timed events about all clients and requests
+     */
+    public static ServantMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Connects the shared client for the given api ahead of its first subscriber, e.g. in
+     * {@link android.app.Application#onCreate()}. The client is held connected until the returned
+     * Disposable is disposed of and then kept according to the {@link KeepAlivePolicy}.
+     *
+     * @param context context to use for the client
+     * @param api     api to use for the client
+     * @return Disposable releasing the prewarmed client
+     * @throws IllegalStateException if client pooling is disabled
+     */
+    public static Disposable prewarm(Context context, Api api) {
+        return prewarmClient(context, new ApiDefinition(api));
+    }
+
+    /**
+     * Connects the shared client for the given api ahead of its first subscriber.
+     *
+     * @param context context to use for the client
+     * @param api     api to use for the client
+     * @param options options for the api
+     * @return Disposable releasing the prewarmed client
+     * @throws IllegalStateException if client pooling is disabled
+     * @see #prewarm(Context, Api)
+     */
+    public static Disposable prewarm(Context context, Api api, Api.ApiOptions.HasOptions options) {
+        return prewarmClient(context, new ApiWithOptions(api, options));
+    }
+
+    /**
+     * Connects the shared client for the given apis ahead of its first subscriber.
+     *
+     * @param context context to use for the client
+     * @param apis    apis to use for the client
+     * @return Disposable releasing the prewarmed client
+     * @throws IllegalStateException if client pooling is disabled
+     * @see #prewarm(Context, Api)
+     */
+    public static Disposable prewarm(Context context, CompositeApi apis) {
+        return prewarmClient(context, apis);
+    }
+
+    private static Disposable prewarmClient(Context context, GoogleApi googleApi) {
+        if (!clientPoolingEnabled) {
+            throw new IllegalStateException("Client pooling has to be enabled to prewarm clients.");
+        }
+        ClientConnection connection = ClientPool.prewarm(context, googleApi);
+        return Disposables.fromAction(() -> ClientPool.release(connection));
+    }
+
     /**
      * Serve a GoogleApiClient with callback actions
      *
@@ -79,6 +439,26 @@ public class Servant {
                 onError);
     }
 
+    /**
+     * Serve a GoogleApiClient for multiple APIs with callback actions. Concurrency limits, rate
+     * limiters, the circuit breaker and metrics apply to the first of the apis only.
+     *
+     * @param context           context to use for the client
+     * @param apis              apis to use for the client, limited by the first one
+     * @param onClientConnected action to perform when the client was connected
+     * @param onError           action to perform if the client throws an error
+     * @see GoogleApiClientActions
+     */
+    public static void actions(Context context,
+                               CompositeApi apis,
+                               Consumer<GoogleApiClient> onClientConnected,
+                               Consumer<Throwable> onError) {
+        GoogleApiClientActions.create(context.getApplicationContext(),
+                apis,
+                onClientConnected,
+                onError);
+    }
+
     /**
      * Serve an Observable GoogleApiClient
      *
@@ -106,6 +486,78 @@ public class Servant {
         return GoogleApiClientObservable.create(context.getApplicationContext(), new ApiWithOptions(api, options));
     }
 
+    /**
+     * Serve an Observable GoogleApiClient for multiple APIs
+     *
+     * @param context context to use for the client
+     * @param apis    apis to use for the client
+     * @return Observable that will emit the client once it was successfully connected
+     * @see GoogleApiClientObservable
+     */
+    public static Observable<GoogleApiClient> observable(Context context, CompositeApi apis) {
+        return GoogleApiClientObservable.create(context.getApplicationContext(), apis);
+    }
+
+    /**
+     * Serve an Observable GoogleApiClient that survives suspended and failed connections. The
+     * client is reconnected according to the given policy and emitted again once it is
+     * reconnected. The Observable only errors once the retries of the policy are exhausted.
+     *
+     * @param context     context to use for the client
+     * @param api         api to use for the client
+     * @param retryPolicy policy for reconnecting the client
+     * @return Observable that will emit the client every time it was successfully connected
+     * @see GoogleApiClientObservable
+     */
+    public static Observable<GoogleApiClient> resilientObservable(Context context,
+                                                                  Api api,
+                                                                  RetryPolicy retryPolicy) {
+        return GoogleApiClientObservable.createResilient(context.getApplicationContext(),
+                new ApiDefinition(api),
+                retryPolicy);
+    }
+
+    /**
+     * Serve an Observable GoogleApiClient that survives suspended and failed connections. The
+     * client is reconnected according to the given policy and emitted again once it is
+     * reconnected. The Observable only errors once the retries of the policy are exhausted.
+     *
+     * @param context     context to use for the client
+     * @param api         api to use for the client
+     * @param options     options for the api
+     * @param retryPolicy policy for reconnecting the client
+     * @return Observable that will emit the client every time it was successfully connected
+     * @see GoogleApiClientObservable
+     */
+    public static Observable<GoogleApiClient> resilientObservable(Context context,
+                                                                  Api api,
+                                                                  Api.ApiOptions.HasOptions options,
+                                                                  RetryPolicy retryPolicy) {
+        return GoogleApiClientObservable.createResilient(context.getApplicationContext(),
+                new ApiWithOptions(api, options),
+                retryPolicy);
+    }
+
+    /**
+     * Serve an Observable GoogleApiClient for multiple APIs that survives suspended and failed
+     * connections. The client is reconnected according to the given policy and emitted again
+     * once it is reconnected. The Observable only errors once the retries of the policy are
+     * exhausted.
+     *
+     * @param context     context to use for the client
+     * @param apis        apis to use for the client
+     * @param retryPolicy policy for reconnecting the client
+     * @return Observable that will emit the client every time it was successfully connected
+     * @see GoogleApiClientObservable
+     */
+    public static Observable<GoogleApiClient> resilientObservable(Context context,
+                                                                  CompositeApi apis,
+                                                                  RetryPolicy retryPolicy) {
+        return GoogleApiClientObservable.createResilient(context.getApplicationContext(),
+                apis,
+                retryPolicy);
+    }
+
     /**
      * Serve a Single GoogleApiClient
      *
@@ -114,7 +566,24 @@ public class Servant {
      * @return Single that will provide the client
      */
     public static <T> Single<T> single(GoogleApiClientSingle<T> single) {
-        return Single.create(single);
+        return single.toSingle();
+    }
+
+    /**
+     * Serve the stored result of a request immediately and refresh it with a connected client.
+     * The request must be persisted with
+     * {@link GoogleApiClientRequestSingle#storeIn(ResultStore, ResultSerializer)}, otherwise only
+     * the result of the request is emitted.
+     *
+     * @param request   request to serve
+     * @param emitStale whether to emit the stored result before the result of the request,
+     *                  otherwise it is only emitted if the request fails
+     * @param <T>       type of return value
+     * @return Observable emitting the stored and the refreshed result
+     */
+    public static <T> Observable<T> staleWhileRevalidate(GoogleApiClientRequestSingle<T, ?> request,
+                                                         boolean emitStale) {
+        return request.toStaleWhileRevalidate(emitStale);
     }
 
     /**
@@ -124,6 +593,179 @@ public class Servant {
      * @return Completable providing the client
      */
     public static Completable completable(GoogleApiClientCompletable completable) {
-        return Completable.create(completable);
+        return completable.toCompletable();
+    }
+
+    /**
+     * Serve a Flowable GoogleApiClient
+     *
+     * @param flowable flowable implementation
+     * @param strategy strategy for values that are emitted faster than they are consumed
+     * @param <T>      type of the emitted values
+     * @return Flowable emitting the values of the client
+     */
+    public static <T> Flowable<T> flowable(GoogleApiClientFlowable<T> flowable,
+                                           BackpressureStrategy strategy) {
+        return Flowable.create(flowable, strategy);
+    }
+
+    /**
+     * Serve a Flowable GoogleApiClient that buffers a bounded number of values which are emitted
+     * faster than they are consumed.
+     *
+     * @param flowable         flowable implementation
+     * @param capacity         maximum number of buffered values
+     * @param overflowStrategy strategy once the buffer is full
+     * @param <T>              type of the emitted values
+     * @return Flowable emitting the values of the client
+     */
+    public static <T> Flowable<T> flowable(GoogleApiClientFlowable<T> flowable,
+                                           int capacity,
+                                           BackpressureOverflowStrategy overflowStrategy) {
+        return Flowable.create(flowable, BackpressureStrategy.MISSING)
+                .onBackpressureBuffer(capacity, null, overflowStrategy);
+    }
+
+    /**
+     * Execute a batch of requests over one single GoogleApiClient. Collections of requests can
+     * be passed via {@link Flowable#fromIterable(Iterable)}.
+     *
+     * @param context        context to use for the client
+     * @param api            api to use for the client
+     * @param requests       requests to execute
+     * @param maxConcurrency maximum number of requests that are in flight at the same time
+     * @param ordered        whether results are emitted in the order of the requests or as soon
+     *                       as they arrive
+     * @param <T>            type of the unwrapped results
+     * @return Flowable emitting the unwrapped results of all requests
+     * @see GoogleApiClientBatch
+     */
+    public static <T> Flowable<T> batch(Context context,
+                                        Api api,
+                                        Publisher<? extends BatchRequest<T, ?>> requests,
+                                        int maxConcurrency,
+                                        boolean ordered) {
+        return GoogleApiClientBatch.create(context.getApplicationContext(),
+                new ApiDefinition(api),
+                requests,
+                maxConcurrency,
+                ordered);
+    }
+
+    /**
+     * Execute a batch of requests over one single GoogleApiClient. Collections of requests can
+     * be passed via {@link Flowable#fromIterable(Iterable)}.
+     *
+     * @param context        context to use for the client
+     * @param api            api to use for the client
+     * @param options        options for the api
+     * @param requests       requests to execute
+     * @param maxConcurrency maximum number of requests that are in flight at the same time
+     * @param ordered        whether results are emitted in the order of the requests or as soon
+     *                       as they arrive
+     * @param <T>            type of the unwrapped results
+     * @return Flowable emitting the unwrapped results of all requests
+     * @see GoogleApiClientBatch
+     */
+    public static <T> Flowable<T> batch(Context context,
+                                        Api api,
+                                        Api.ApiOptions.HasOptions options,
+                                        Publisher<? extends BatchRequest<T, ?>> requests,
+                                        int maxConcurrency,
+                                        boolean ordered) {
+        return GoogleApiClientBatch.create(context.getApplicationContext(),
+                new ApiWithOptions(api, options),
+                requests,
+                maxConcurrency,
+                ordered);
+    }
+
+    /**
+     * Execute a batch of requests over one single GoogleApiClient for multiple APIs. Collections
+     * of requests can be passed via {@link Flowable#fromIterable(Iterable)}.
+     *
+     * @param context        context to use for the client
+     * @param apis           apis to use for the client
+     * @param requests       requests to execute
+     * @param maxConcurrency maximum number of requests that are in flight at the same time
+     * @param ordered        whether results are emitted in the order of the requests or as soon
+     *                       as they arrive
+     * @param <T>            type of the unwrapped results
+     * @return Flowable emitting the unwrapped results of all requests
+     * @see GoogleApiClientBatch
+     */
+    public static <T> Flowable<T> batch(Context context,
+                                        CompositeApi apis,
+                                        Publisher<? extends BatchRequest<T, ?>> requests,
+                                        int maxConcurrency,
+                                        boolean ordered) {
+        return GoogleApiClientBatch.create(context.getApplicationContext(),
+                apis,
+                requests,
+                maxConcurrency,
+                ordered);
+    }
+
+    /**
+     * Execute a request whose result is a {@link com.google.android.gms.common.data.DataBuffer}
+     * and stream the entries of the buffer without copying it. Entries are read and frozen as
+     * they are requested downstream. The buffer is always released once the Flowable completes,
+     * fails or is disposed of.
+     *
+     * @param context context to use for the client
+     * @param api     api to use for the client
+     * @param request request returning the buffer
+     * @param <T>     type of the entries of the buffer
+     * @return Flowable emitting the entries of the buffer
+     * @see GoogleApiClientDataBuffer
+     */
+    public static <T> Flowable<T> dataBuffer(Context context,
+                                             Api api,
+                                             DataBufferRequest<T, ?> request) {
+        return GoogleApiClientDataBuffer.create(context.getApplicationContext(),
+                new ApiDefinition(api),
+                request);
+    }
+
+    /**
+     * Execute a request whose result is a {@link com.google.android.gms.common.data.DataBuffer}
+     * and stream the entries of the buffer without copying it. Entries are read and frozen as
+     * they are requested downstream. The buffer is always released once the Flowable completes,
+     * fails or is disposed of.
+     *
+     * @param context context to use for the client
+     * @param api     api to use for the client
+     * @param options options for the api
+     * @param request request returning the buffer
+     * @param <T>     type of the entries of the buffer
+     * @return Flowable emitting the entries of the buffer
+     * @see GoogleApiClientDataBuffer
+     */
+    public static <T> Flowable<T> dataBuffer(Context context,
+                                             Api api,
+                                             Api.ApiOptions.HasOptions options,
+                                             DataBufferRequest<T, ?> request) {
+        return GoogleApiClientDataBuffer.create(context.getApplicationContext(),
+                new ApiWithOptions(api, options),
+                request);
+    }
+
+    /**
+     * Execute a request whose result is a {@link com.google.android.gms.common.data.DataBuffer}
+     * over one client for all given apis and stream the entries of the buffer without copying it.
+     *
+     * @param context context to use for the client
+     * @param apis    apis to use for the client
+     * @param request request returning the buffer
+     * @param <T>     type of the entries of the buffer
+     * @return Flowable emitting the entries of the buffer
+     * @see GoogleApiClientDataBuffer
+     */
+    public static <T> Flowable<T> dataBuffer(Context context,
+                                             CompositeApi apis,
+                                             DataBufferRequest<T, ?> request) {
+        return GoogleApiClientDataBuffer.create(context.getApplicationContext(),
+                apis,
+                request);
     }
 }
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.Api;
+
+/**
+ * Receives timed events about the clients and requests served by {@link Servant}.
+ * <p>
+ * Events are reported for the {@link Api} of a client. Clients for a {@link CompositeApi} report
+ * their events for the first API of the composite. Events are reported on the thread they
+ * happened on, so implementations have to be thread-safe and should return quickly.
+ *
+ * @see Servant#setMetrics(ServantMetrics)
+ * @see ServantMetricsRecorder
+ */
+public interface ServantMetrics {
+
+    /**
+     * A new {@link com.google.android.gms.common.api.GoogleApiClient} was built
+     *
+     * @param api api of the client
+     */
+    void onClientCreated(Api api);
+
+    /**
+     * A {@link com.google.android.gms.common.api.GoogleApiClient} was disconnected for good
+     *
+     * @param api api of the client
+     */
+    void onClientDisconnected(Api api);
+
+    /**
+     * A {@link com.google.android.gms.common.api.GoogleApiClient} connected
+     *
+     * @param api          api of the client
+     * @param latencyNanos time from the call to connect until the client was connected
+     */
+    void onConnected(Api api, long latencyNanos);
+
+    /**
+     * A connection attempt failed or the connection was suspended
+     *
+     * @param api       api of the client
+     * @param exception the failure
+     */
+    void onConnectionFailed(Api api, ClientException exception);
+
+    /**
+     * A connected client was served to a Single, Completable, Observable, Flowable or action
+     *
+     * @param api          api of the client
+     * @param latencyNanos time from subscribing until the connected client was served
+     */
+    void onClientServed(Api api, long latencyNanos);
+
+    /**
+     * The result of a request arrived
+     *
+     * @param api          api of the client
+     * @param latencyNanos time from creating the request until its result arrived
+     * @param success      whether the request was successful
+     */
+    void onRequestCompleted(Api api, long latencyNanos, boolean success);
+}
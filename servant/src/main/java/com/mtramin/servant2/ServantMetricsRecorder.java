@@ -0,0 +1,202 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.Api;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link ServantMetrics} that records counters and latency histograms per {@link Api}
+ * using lock-free atomics. Use {@link #snapshot()} to read the recorded values.
+ */
+public final class ServantMetricsRecorder implements ServantMetrics {
+
+    private final ConcurrentHashMap<Api, ApiMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void onClientCreated(Api api) {
+        ApiMetrics apiMetrics = metricsOf(api);
+        apiMetrics.clientsCreated.incrementAndGet();
+        apiMetrics.activeClients.incrementAndGet();
+    }
+
+    @Override
+    public void onClientDisconnected(Api api) {
+        metricsOf(api).activeClients.decrementAndGet();
+    }
+
+    @Override
+    public void onConnected(Api api, long latencyNanos) {
+        metricsOf(api).connectLatency.record(latencyNanos);
+    }
+
+    @Override
+    public void onConnectionFailed(Api api, ClientException exception) {
+        metricsOf(api).connectionFailures.incrementAndGet();
+    }
+
+    @Override
+    public void onClientServed(Api api, long latencyNanos) {
+        metricsOf(api).servedLatency.record(latencyNanos);
+    }
+
+    @Override
+    public void onRequestCompleted(Api api, long latencyNanos, boolean success) {
+        ApiMetrics apiMetrics = metricsOf(api);
+        apiMetrics.requestLatency.record(latencyNanos);
+        if (!success) {
+            apiMetrics.requestFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return snapshot of the recorded values of all APIs
+     */
+    public Map<Api, ApiSnapshot> snapshot() {
+        Map<Api, ApiSnapshot> snapshot = new HashMap<>();
+        for (Map.Entry<Api, ApiMetrics> entry : metrics.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshot;
+    }
+
+    private ApiMetrics metricsOf(Api api) {
+        ApiMetrics apiMetrics = metrics.get(api);
+        if (apiMetrics == null) {
+            ApiMetrics created = new ApiMetrics();
+            apiMetrics = metrics.putIfAbsent(api, created);
+            if (apiMetrics == null) {
+                apiMetrics = created;
+            }
+        }
+        return apiMetrics;
+    }
+
+    private static final class ApiMetrics {
+        final AtomicLong clientsCreated = new AtomicLong();
+        final AtomicLong activeClients = new AtomicLong();
+        final AtomicLong connectionFailures = new AtomicLong();
+        final AtomicLong requestFailures = new AtomicLong();
+        final LatencyHistogram connectLatency = new LatencyHistogram();
+        final LatencyHistogram servedLatency = new LatencyHistogram();
+        final LatencyHistogram requestLatency = new LatencyHistogram();
+
+        ApiSnapshot snapshot() {
+            return new ApiSnapshot(clientsCreated.get(),
+                    activeClients.get(),
+                    connectionFailures.get(),
+                    requestFailures.get(),
+                    connectLatency.snapshot(),
+                    servedLatency.snapshot(),
+                    requestLatency.snapshot());
+        }
+    }
+
+    /**
+     * Snapshot of the recorded values of a single {@link Api}
+     */
+    public static final class ApiSnapshot {
+
+        private final long clientsCreated;
+        private final long activeClients;
+        private final long connectionFailures;
+        private final long requestFailures;
+        private final LatencySnapshot connectLatency;
+        private final LatencySnapshot servedLatency;
+        private final LatencySnapshot requestLatency;
+
+        ApiSnapshot(long clientsCreated,
+                    long activeClients,
+                    long connectionFailures,
+                    long requestFailures,
+                    LatencySnapshot connectLatency,
+                    LatencySnapshot servedLatency,
+                    LatencySnapshot requestLatency) {
+            this.clientsCreated = clientsCreated;
+            this.activeClients = activeClients;
+            this.connectionFailures = connectionFailures;
+            this.requestFailures = requestFailures;
+            this.connectLatency = connectLatency;
+            this.servedLatency = servedLatency;
+            this.requestLatency = requestLatency;
+        }
+
+        /**
+         * @return number of clients that were built
+         */
+        public long clientsCreated() {
+            return clientsCreated;
+        }
+
+        /**
+         * @return number of clients that were built and not disconnected yet
+         */
+        public long activeClients() {
+            return activeClients;
+        }
+
+        /**
+         * @return number of failed connection attempts and suspensions
+         */
+        public long connectionFailures() {
+            return connectionFailures;
+        }
+
+        /**
+         * @return number of unsuccessful requests
+         */
+        public long requestFailures() {
+            return requestFailures;
+        }
+
+        /**
+         * @return latencies from connecting a client until it was connected
+         */
+        public LatencySnapshot connectLatency() {
+            return connectLatency;
+        }
+
+        /**
+         * @return latencies from subscribing until the connected client was served
+         */
+        public LatencySnapshot servedLatency() {
+            return servedLatency;
+        }
+
+        /**
+         * @return latencies from creating a request until its result arrived
+         */
+        public LatencySnapshot requestLatency() {
+            return requestLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "ApiSnapshot{clientsCreated=" + clientsCreated
+                    + ", activeClients=" + activeClients
+                    + ", connectionFailures=" + connectionFailures
+                    + ", requestFailures=" + requestFailures
+                    + ", connectLatency=" + connectLatency
+                    + ", servedLatency=" + servedLatency
+                    + ", requestLatency=" + requestLatency
+                    + '}';
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.Api;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Always-on, fixed-size ring buffer of the last {@value #CAPACITY} lifecycle events of all clients,
+ * e.g. when clients were built, connected or disconnected, when callbacks fired and on which thread.
+ * <p>
+ * All storage is allocated upfront, so recording an event does not allocate. Use {@link #dump()}
+ * or {@link #dumpJson()} to read the recorded events, e.g. when attaching them to a bug report.
+ */
+public final class ServantTrace {
+
+    static final int CAPACITY = 512;
+    private static final int MASK = CAPACITY - 1;
+
+    static final int CLIENT_CREATED = 0;
+    static final int CONNECT = 1;
+    static final int CONNECTED = 2;
+    static final int CONNECTION_FAILED = 3;
+    static final int CONNECTION_SUSPENDED = 4;
+    static final int RETRY_SCHEDULED = 5;
+    static final int DISCONNECT = 6;
+    static final int SUBSCRIBED = 7;
+    static final int SERVED = 8;
+    static final int ERROR = 9;
+    static final int RELEASED = 10;
+    static final int REQUEST_SENT = 11;
+    static final int REQUEST_COMPLETED = 12;
+    static final int REQUEST_CANCELED = 13;
+    static final int PAUSE = 14;
+    static final int RESUME = 15;
+
+    private static final String[] EVENT_NAMES = {
+            "CLIENT_CREATED",
+            "CONNECT",
+            "CONNECTED",
+            "CONNECTION_FAILED",
+            "CONNECTION_SUSPENDED",
+            "RETRY_SCHEDULED",
+            "DISCONNECT",
+            "SUBSCRIBED",
+            "SERVED",
+            "ERROR",
+            "RELEASED",
+            "REQUEST_SENT",
+            "REQUEST_COMPLETED",
+            "REQUEST_CANCELED",
+            "PAUSE",
+            "RESUME"
+    };
+
+    private static final AtomicLong cursor = new AtomicLong();
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    // Every slot is accessed with volatile semantics: plain fields could be reordered around the
+    // sequence writes and reads, so a dump could not tell whether it read a torn event
+    private static final AtomicLongArray timestamps = new AtomicLongArray(CAPACITY);
+    private static final AtomicIntegerArray events = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicIntegerArray values = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicIntegerArray sourceIds = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicReferenceArray<Class<?>> sources = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicReferenceArray<Api> apis = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLongArray threadIds = new AtomicLongArray(CAPACITY);
+    private static final AtomicReferenceArray<String> threadNames = new AtomicReferenceArray<>(CAPACITY);
+
+    private ServantTrace() {
+        // no instances
+    }
+
+    /**
+     * Records an event. Does not allocate or block, so the event is dropped if its slot is still
+     * written by another thread.
+     *
+     * @param event  type of the event
+     * @param api    api of the client
+     * @param source client or connection that recorded the event
+     * @param value  additional value of the event, e.g. an error code
+     */
+    static void record(int event, Api api, Object source, int value) {
+        long index = cursor.getAndIncrement();
+        int slot = (int) (index & MASK);
+        Thread thread = Thread.currentThread();
+
+        // Claim the slot while it is written. A thread lagging a whole ring behind drops its
+        // event instead of writing the slot concurrently with or after a newer event
+        long sequence;
+        do {
+            sequence = sequences.get(slot);
+            if (sequence < 0 || sequence > index) {
+                return;
+            }
+        } while (!sequences.compareAndSet(slot, sequence, -1));
+
+        timestamps.set(slot, System.currentTimeMillis());
+        events.set(slot, event);
+        values.set(slot, value);
+        sourceIds.set(slot, System.identityHashCode(source));
+        sources.set(slot, source.getClass());
+        apis.set(slot, api);
+        threadIds.set(slot, thread.getId());
+        threadNames.set(slot, thread.getName());
+        sequences.set(slot, index + 1);
+    }
+
+    /**
+     * @return the recorded events as text, one event per line, oldest first
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            dump(builder, false);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the recorded events as JSON array, oldest first
+     */
+    public static String dumpJson() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            dump(builder, true);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the recorded events to the given appendable, oldest first
+     * <p>
+     * Does not block recording. Events that are recorded or overwritten while the dump reads them
+     * are skipped, so a dump taken while clients are busy may have gaps. Every written event was
+     * recorded as a whole.
+     *
+     * @param appendable destination of the events
+     * @param json       whether to write a JSON array or text
+     * @throws IOException if writing to the appendable fails
+     */
+    public static void dump(Appendable appendable, boolean json) throws IOException {
+        long end = cursor.get();
+        long start = Math.max(0, end - CAPACITY);
+        boolean first = true;
+
+        if (json) {
+            appendable.append('[');
+        }
+        for (long index = start; index < end; index++) {
+            int slot = (int) (index & MASK);
+            if (sequences.get(slot) != index + 1) {
+                // Overwritten or still being written
+                continue;
+            }
+
+            long timestamp = timestamps.get(slot);
+            int event = events.get(slot);
+            int value = values.get(slot);
+            Class<?> sourceClass = sources.get(slot);
+            int sourceId = sourceIds.get(slot);
+            Api api = apis.get(slot);
+            long threadId = threadIds.get(slot);
+            String threadName = threadNames.get(slot);
+
+            if (sequences.get(slot) != index + 1) {
+                // Overwritten while it was read
+                continue;
+            }
+
+            String source = sourceClass.getName() + '@' + Integer.toHexString(sourceId);
+            String apiName = api == null ? null : api.getName();
+
+            if (json) {
+                if (!first) {
+                    appendable.append(',');
+                }
+                appendable.append("{\"time\":").append(Long.toString(timestamp))
+                        .append(",\"event\":\"").append(EVENT_NAMES[event])
+                        .append("\",\"value\":").append(Integer.toString(value))
+                        .append(",\"source\":\"").append(escape(source))
+                        .append("\",\"api\":").append(apiName == null ? "null" : '"' + escape(apiName) + '"')
+                        .append(",\"threadId\":").append(Long.toString(threadId))
+                        .append(",\"thread\":\"").append(escape(threadName))
+                        .append("\"}");
+            } else {
+                appendable.append(Long.toString(timestamp))
+                        .append(' ').append(EVENT_NAMES[event])
+                        .append(" value=").append(Integer.toString(value))
+                        .append(" source=").append(source)
+                        .append(" api=").append(String.valueOf(apiName))
+                        .append(" thread=").append(threadName)
+                        .append('(').append(Long.toString(threadId)).append(')')
+                        .append('\n');
+            }
+            first = false;
+        }
+        if (json) {
+            appendable.append(']');
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.ConnectionResult;
+
+/**
+ * Exception that is thrown without building a client while the {@link CircuitBreaker} for an api
+ * is open, e.g. as Google Play Services is missing, disabled or updating.
+ * <p>
+ * Provides the error code of the failure that opened the circuit.
+ */
+public class ServiceUnavailableException extends ConnectionException {
+
+    private final long retryAfterNanos;
+
+    public ServiceUnavailableException(ConnectionResult connectionResult, long retryAfterNanos) {
+        super(connectionResult);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * @return time in nanoseconds until clients for the api will be built again
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return false;
+    }
+}
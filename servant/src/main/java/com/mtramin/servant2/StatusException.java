@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2016 Marvin Ramin.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * <http://www.apache.org/licenses/LICENSE-2.0>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtramin.servant2;
+
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.common.api.Status;
+
+/**
+ * Exception that is thrown when a request of a
+ * {@link com.google.android.gms.common.api.GoogleApiClient} was not successful. Provides the full
+ * {@link Status} of the result.
+ */
+public class StatusException extends ClientException {
+
+    private final Status status;
+    private final boolean retryable;
+
+    public StatusException(Status status) {
+        super("Error in client request. " + status.getStatusMessage());
+        this.status = status;
+        this.retryable = isRetryable(status.getStatusCode());
+    }
+
+    /**
+     * @return status of the failed request
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the status code, see {@link CommonStatusCodes}
+     */
+    public int getStatusCode() {
+        return status.getStatusCode();
+    }
+
+    /**
+     * @return whether the failure can be resolved by starting the resolution of the {@link Status}
+     */
+    public boolean hasResolution() {
+        return status.hasResolution();
+    }
+
+    @Override
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @param statusCode status code of a request
+     * @return whether repeating the request might succeed without any user interaction
+     */
+    static boolean isRetryable(int statusCode) {
+        switch (statusCode) {
+            case CommonStatusCodes.NETWORK_ERROR:
+            case CommonStatusCodes.INTERNAL_ERROR:
+            case CommonStatusCodes.INTERRUPTED:
+            case CommonStatusCodes.TIMEOUT:
+            case CommonStatusCodes.API_NOT_CONNECTED:
+                return true;
+            default:
+                return false;
+        }
+    }
+}